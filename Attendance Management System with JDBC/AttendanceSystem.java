@@ -1,20 +1,47 @@
 import java.sql.*;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Scanner;
+import java.util.Map;
+import java.util.LinkedHashMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Collection;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.nio.charset.StandardCharsets;
 import java.math.BigInteger;
 
 public class AttendanceSystem {
-    private static final String DB_URL = "jdbc:postgresql://localhost:5432/attendance_db";
+    // reWriteBatchedInserts lets the driver collapse a batch into multi-row INSERTs
+    private static final String DB_URL = "jdbc:postgresql://localhost:5432/attendance_db?reWriteBatchedInserts=true";
     private static final String DB_USER = "postgres";
     private static final String DB_PASSWORD = "yourpassword";
+    private static final int ATTENDANCE_BATCH_SIZE = 500;
+    private static final int CUBE_LOAD_FETCH_SIZE = 10000;
+    // updated_at is the writing transaction's start time, so a refresh rereads this far behind its
+    // high-water mark to catch transactions that were still open last time; re-applying rows is harmless
+    private static final Duration CUBE_REFRESH_OVERLAP = Duration.ofMinutes(5);
+    private static final String ATTENDANCE_UPSERT =
+        "INSERT INTO attendance (person_id, date, status) VALUES (?, ?, ?) " +
+        "ON CONFLICT (person_id, date) DO UPDATE SET status = EXCLUDED.status, updated_at = now() " +
+        "WHERE attendance.status <> EXCLUDED.status";
     
     private Connection connection;
     private Scanner scanner;
     private DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    // Loaded on the first report, see refreshCube
+    private AttendanceCube cube;
     private int currentUserId = -1;
     private String currentUserRole = "";
     
@@ -57,6 +84,21 @@ public class AttendanceSystem {
             stmt.execute(createUsersTable);
             stmt.execute(createPersonsTable);
             stmt.execute(createAttendanceTable);
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_persons_department ON persons (department)");
+            
+            // Lets the report cube fetch only rows written since its last refresh
+            stmt.execute("ALTER TABLE attendance ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP NOT NULL DEFAULT now()");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_attendance_updated_at ON attendance (updated_at)");
+            
+            // One row per person per day; older databases may hold duplicates, keep the latest
+            ResultSet indexRs = stmt.executeQuery(
+                "SELECT 1 FROM pg_indexes WHERE indexname = 'idx_attendance_person_date'");
+            if (!indexRs.next()) {
+                stmt.executeUpdate("DELETE FROM attendance a USING attendance b " +
+                                   "WHERE a.person_id = b.person_id AND a.date = b.date " +
+                                   "AND a.attendance_id < b.attendance_id");
+                stmt.execute("CREATE UNIQUE INDEX idx_attendance_person_date ON attendance (person_id, date)");
+            }
             
             // Create default admin account if it doesn't exist
             String checkAdmin = "SELECT 1 FROM users WHERE username = 'admin'";
@@ -405,7 +447,7 @@ public class AttendanceSystem {
         
         String sql = "INSERT INTO persons (name, email, role, department, user_id) VALUES (?, ?, ?, ?, ?)";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             pstmt.setString(1, name);
             pstmt.setString(2, email);
             pstmt.setString(3, role);
@@ -413,12 +455,472 @@ public class AttendanceSystem {
             pstmt.setObject(5, userId == -1 ? null : userId);
             pstmt.executeUpdate();
             
+            ResultSet keys = pstmt.getGeneratedKeys();
+            if (keys.next() && cube != null) {
+                cube.putMember(keys.getInt(1), name, department.isEmpty() ? null : department);
+            }
+            
             System.out.println("\nPerson added successfully!");
         } catch (SQLException e) {
             System.err.println("Error adding person: " + e.getMessage());
         }
     }
     
+    private void recordAttendance() {
+        while (true) {
+            System.out.println("\nRecord Attendance:");
+            System.out.println("1. Record for a Person");
+            System.out.println("2. Roll Call (Department)");
+            System.out.println("3. Back to Main Menu");
+            System.out.print("Enter your choice (1-3): ");
+            
+            String choice = scanner.nextLine().trim();
+            
+            switch (choice) {
+                case "1":
+                    recordAttendanceForPerson();
+                    break;
+                case "2":
+                    rollCall();
+                    break;
+                case "3":
+                    return;
+                default:
+                    System.out.println("Invalid choice. Please try again.");
+            }
+        }
+    }
+    
+    private void recordAttendanceForPerson() {
+        System.out.print("\nEnter person ID: ");
+        int personId;
+        try {
+            personId = Integer.parseInt(scanner.nextLine().trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid person ID.");
+            return;
+        }
+        
+        LocalDate date = readAttendanceDate();
+        if (date == null) return;
+        
+        System.out.print("Enter status (P=Present, A=Absent, L=Late, V=Leave): ");
+        String status = parseStatus(scanner.nextLine());
+        if (status == null) {
+            System.out.println("Invalid status.");
+            return;
+        }
+        
+        Map<Integer, String> statuses = new LinkedHashMap<>();
+        statuses.put(personId, status);
+        
+        try {
+            saveAttendance(date, statuses);
+            System.out.println("Attendance recorded successfully!");
+        } catch (SQLException e) {
+            System.err.println("Error recording attendance: " + e.getMessage());
+        }
+    }
+    
+    // Loads the whole department in one query; the teacher only enters the exceptions
+    private void rollCall() {
+        System.out.print("\nEnter department: ");
+        String department = scanner.nextLine().trim();
+        
+        LocalDate date = readAttendanceDate();
+        if (date == null) return;
+        
+        String sql = "SELECT p.person_id, p.name, a.status FROM persons p " +
+                     "LEFT JOIN attendance a ON a.person_id = p.person_id AND a.date = ? " +
+                     "WHERE p.department = ? ORDER BY p.name, p.person_id";
+        
+        Map<Integer, String> names = new LinkedHashMap<>();
+        Map<Integer, String> statuses = new LinkedHashMap<>();
+        int previouslyRecorded = 0;
+        
+        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setDate(1, Date.valueOf(date));
+            pstmt.setString(2, department);
+            ResultSet rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                int personId = rs.getInt("person_id");
+                String status = rs.getString("status");
+                if (status != null) previouslyRecorded++;
+                names.put(personId, rs.getString("name"));
+                // Re-running a roll call keeps earlier marks; everyone else defaults to Present
+                statuses.put(personId, status == null ? "Present" : status);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error loading roster: " + e.getMessage());
+            return;
+        }
+        
+        if (names.isEmpty()) {
+            System.out.println("No persons found in department: " + department);
+            return;
+        }
+        
+        System.out.println("\nRoll Call - " + department + " - " + date.format(dateFormatter));
+        System.out.printf("%-8s %-30s %-10s%n", "ID", "Name", "Status");
+        System.out.println("------------------------------------------------");
+        for (Map.Entry<Integer, String> entry : names.entrySet()) {
+            System.out.printf("%-8d %-30s %-10s%n",
+                entry.getKey(), entry.getValue(), statuses.get(entry.getKey()));
+        }
+        if (previouslyRecorded > 0) {
+            System.out.println(previouslyRecorded + " of " + names.size() + " already recorded for this date.");
+        }
+        
+        System.out.println("\nEnter exceptions as <person ID>=<status> (P=Present, A=Absent, L=Late, V=Leave),");
+        System.out.println("several per line separated by spaces or commas. Press Enter on an empty line to finish.");
+        
+        while (true) {
+            System.out.print("> ");
+            String line = scanner.nextLine().trim();
+            if (line.isEmpty()) break;
+            
+            for (String token : line.split("[\\s,]+")) {
+                String[] parts = token.split("=", 2);
+                String status = parts.length == 2 ? parseStatus(parts[1]) : null;
+                Integer personId = null;
+                try {
+                    personId = Integer.valueOf(parts[0]);
+                } catch (NumberFormatException e) {
+                    // reported below
+                }
+                
+                if (personId == null || status == null) {
+                    System.out.println("Skipping invalid entry: " + token);
+                } else if (!names.containsKey(personId)) {
+                    System.out.println("Person " + personId + " is not in " + department + ", skipped.");
+                } else {
+                    statuses.put(personId, status);
+                }
+            }
+        }
+        
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String status : new String[] {"Present", "Absent", "Late", "Leave"}) {
+            counts.put(status, 0);
+        }
+        for (String status : statuses.values()) {
+            counts.merge(status, 1, Integer::sum);
+        }
+        
+        System.out.println("\nSummary: " + counts);
+        System.out.print("Save attendance for " + statuses.size() + " persons? (y/n): ");
+        if (!scanner.nextLine().trim().equalsIgnoreCase("y")) {
+            System.out.println("Roll call discarded.");
+            return;
+        }
+        
+        try {
+            saveAttendance(date, statuses);
+            System.out.println("Attendance saved for " + statuses.size() + " persons.");
+        } catch (SQLException e) {
+            System.err.println("Error saving roll call: " + e.getMessage());
+        }
+    }
+    
+    // Upserts every row in one transaction, sent to the server in batches
+    private void saveAttendance(LocalDate date, Map<Integer, String> statuses) throws SQLException {
+        Date sqlDate = Date.valueOf(date);
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        
+        try (PreparedStatement pstmt = connection.prepareStatement(ATTENDANCE_UPSERT)) {
+            int pending = 0;
+            for (Map.Entry<Integer, String> entry : statuses.entrySet()) {
+                pstmt.setInt(1, entry.getKey());
+                pstmt.setDate(2, sqlDate);
+                pstmt.setString(3, entry.getValue());
+                pstmt.addBatch();
+                
+                if (++pending == ATTENDANCE_BATCH_SIZE) {
+                    pstmt.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                pstmt.executeBatch();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        
+        // Only reached once the rows are committed
+        if (cube != null) {
+            for (Map.Entry<Integer, String> entry : statuses.entrySet()) {
+                cube.record(entry.getKey(), date, entry.getValue());
+            }
+        }
+    }
+    
+    private LocalDate readAttendanceDate() {
+        System.out.print("Enter date (YYYY-MM-DD) or press Enter for today: ");
+        String input = scanner.nextLine().trim();
+        if (input.isEmpty()) return LocalDate.now();
+        
+        try {
+            return LocalDate.parse(input, dateFormatter);
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid date format.");
+            return null;
+        }
+    }
+    
+    private String parseStatus(String input) {
+        switch (input.trim().toUpperCase()) {
+            case "P":
+            case "PRESENT":
+                return "Present";
+            case "A":
+            case "ABSENT":
+                return "Absent";
+            case "L":
+            case "LATE":
+                return "Late";
+            case "V":
+            case "LEAVE":
+                return "Leave";
+            default:
+                return null;
+        }
+    }
+    
+    // Reports are answered from the in-memory cube rather than re-querying attendance. The first
+    // report loads it; later ones only fetch what other sessions have written since.
+    private boolean refreshCube() {
+        try {
+            if (cube == null) {
+                cube = AttendanceCube.load(connection);
+            } else {
+                cube.refresh(connection);
+            }
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error loading attendance: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    private void generateReports() {
+        if (currentUserRole.equals("Student")) {
+            // Students only see their own summary
+            int personId = currentPersonId();
+            if (personId == -1) {
+                System.out.println("No person record associated with your user account.");
+                return;
+            }
+            calculatePersonAttendanceSummary(personId, null, null);
+            return;
+        }
+        
+        while (true) {
+            System.out.println("\nReports:");
+            System.out.println("1. Department Summary");
+            System.out.println("2. Monthly Summary by Department");
+            System.out.println("3. Low Attendance");
+            System.out.println("4. Back to Main Menu");
+            System.out.print("Enter your choice (1-4): ");
+            
+            String choice = scanner.nextLine().trim();
+            
+            try {
+                switch (choice) {
+                    case "1":
+                        departmentSummaryReport();
+                        break;
+                    case "2":
+                        monthlySummaryReport();
+                        break;
+                    case "3":
+                        lowAttendanceReport();
+                        break;
+                    case "4":
+                        return;
+                    default:
+                        System.out.println("Invalid choice. Please try again.");
+                }
+            } catch (DateTimeParseException | NumberFormatException e) {
+                System.out.println("Invalid input: " + e.getMessage());
+            }
+        }
+    }
+    
+    private void departmentSummaryReport() {
+        if (!refreshCube()) return;
+        
+        LocalDate start = readOptionalDate("Enter start date (YYYY-MM-DD) or press Enter for all records: ");
+        LocalDate end = readOptionalDate("Enter end date (YYYY-MM-DD) or press Enter for no end date: ");
+        
+        Map<String, int[]> byDepartment = new TreeMap<>();
+        Map<String, Integer> headcount = new TreeMap<>();
+        int[] counts = new int[AttendanceCube.STATUSES.length];
+        for (AttendanceCube.Member member : cube.members()) {
+            String department = member.department == null ? "(none)" : member.department;
+            int[] totals = byDepartment.computeIfAbsent(department, d -> new int[AttendanceCube.STATUSES.length]);
+            headcount.merge(department, 1, Integer::sum);
+            
+            Arrays.fill(counts, 0);
+            cube.count(member, start, end, counts);
+            for (int i = 0; i < counts.length; i++) {
+                totals[i] += counts[i];
+            }
+        }
+        
+        if (byDepartment.isEmpty()) {
+            System.out.println("No persons found.");
+            return;
+        }
+        
+        System.out.println("\nDepartment Summary");
+        System.out.printf("%-20s %8s %8s %8s %8s %8s %8s%n",
+            "Department", "Persons", "Present", "Absent", "Late", "Leave", "Attend%");
+        System.out.println("-------------------------------------------------------------------------");
+        for (Map.Entry<String, int[]> entry : byDepartment.entrySet()) {
+            int[] totals = entry.getValue();
+            System.out.printf("%-20s %8d %8d %8d %8d %8d %7.1f%%%n",
+                entry.getKey(), headcount.get(entry.getKey()),
+                totals[0], totals[1], totals[2], totals[3], AttendanceCube.percentage(totals));
+        }
+    }
+    
+    private void monthlySummaryReport() {
+        if (!refreshCube()) return;
+        
+        System.out.print("Enter month (YYYY-MM): ");
+        YearMonth month = YearMonth.parse(scanner.nextLine().trim());
+        
+        System.out.print("Enter department: ");
+        String department = scanner.nextLine().trim();
+        
+        List<AttendanceCube.Member> members = new ArrayList<>();
+        for (AttendanceCube.Member member : cube.members()) {
+            if (department.equals(member.department)) {
+                members.add(member);
+            }
+        }
+        if (members.isEmpty()) {
+            System.out.println("No persons found in department: " + department);
+            return;
+        }
+        members.sort(Comparator.comparing((AttendanceCube.Member m) -> m.name == null ? "" : m.name)
+            .thenComparingInt(m -> m.personId));
+        
+        System.out.println("\nMonthly Summary - " + department + " - " + month);
+        System.out.printf("%-8s %-30s %8s %8s %8s %8s %8s%n",
+            "ID", "Name", "Present", "Absent", "Late", "Leave", "Attend%");
+        System.out.println("-------------------------------------------------------------------------------------");
+        
+        int[] counts = new int[AttendanceCube.STATUSES.length];
+        int[] totals = new int[AttendanceCube.STATUSES.length];
+        for (AttendanceCube.Member member : members) {
+            Arrays.fill(counts, 0);
+            cube.count(member, month.atDay(1), month.atEndOfMonth(), counts);
+            for (int i = 0; i < counts.length; i++) {
+                totals[i] += counts[i];
+            }
+            System.out.printf("%-8d %-30s %8d %8d %8d %8d %7.1f%%%n",
+                member.personId, member.name, counts[0], counts[1], counts[2], counts[3],
+                AttendanceCube.percentage(counts));
+        }
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.printf("%-8s %-30s %8d %8d %8d %8d %7.1f%%%n",
+            "", "Total", totals[0], totals[1], totals[2], totals[3], AttendanceCube.percentage(totals));
+    }
+    
+    private void lowAttendanceReport() {
+        if (!refreshCube()) return;
+        
+        LocalDate start = readOptionalDate("Enter start date (YYYY-MM-DD) or press Enter for all records: ");
+        LocalDate end = readOptionalDate("Enter end date (YYYY-MM-DD) or press Enter for no end date: ");
+        
+        System.out.print("Enter department (press Enter for all): ");
+        String department = scanner.nextLine().trim();
+        
+        System.out.print("Show persons below attendance % (e.g. 75): ");
+        double threshold = Double.parseDouble(scanner.nextLine().trim());
+        
+        List<AttendanceCube.Member> below = new ArrayList<>();
+        Map<Integer, Double> percentages = new HashMap<>();
+        int[] counts = new int[AttendanceCube.STATUSES.length];
+        for (AttendanceCube.Member member : cube.members()) {
+            if (!department.isEmpty() && !department.equals(member.department)) continue;
+            
+            Arrays.fill(counts, 0);
+            cube.count(member, start, end, counts);
+            if (AttendanceCube.total(counts) == 0) continue;
+            
+            double percentage = AttendanceCube.percentage(counts);
+            if (percentage < threshold) {
+                below.add(member);
+                percentages.put(member.personId, percentage);
+            }
+        }
+        
+        if (below.isEmpty()) {
+            System.out.println("No persons below " + threshold + "% attendance.");
+            return;
+        }
+        below.sort(Comparator.comparingDouble((AttendanceCube.Member m) -> percentages.get(m.personId))
+            .thenComparingInt(m -> m.personId));
+        
+        System.out.println("\nLow Attendance (below " + threshold + "%)");
+        System.out.printf("%-8s %-30s %-20s %8s%n", "ID", "Name", "Department", "Attend%");
+        System.out.println("--------------------------------------------------------------------");
+        for (AttendanceCube.Member member : below) {
+            System.out.printf("%-8d %-30s %-20s %7.1f%%%n",
+                member.personId, member.name, member.department == null ? "" : member.department,
+                percentages.get(member.personId));
+        }
+    }
+    
+    private void calculatePersonAttendanceSummary(int personId, LocalDate startDate, LocalDate endDate) {
+        if (!refreshCube()) return;
+        
+        int[] counts = cube.count(personId, startDate, endDate);
+        int total = AttendanceCube.total(counts);
+        
+        System.out.println("\nAttendance Summary");
+        System.out.println("------------------");
+        if (total == 0) {
+            System.out.println("No attendance records in this period.");
+            return;
+        }
+        
+        for (int i = 0; i < counts.length; i++) {
+            System.out.printf("%-10s %5d (%.1f%%)%n",
+                AttendanceCube.STATUSES[i] + ":", counts[i], counts[i] * 100.0 / total);
+        }
+        System.out.printf("%-10s %5d%n", "Total:", total);
+        System.out.printf("Attendance (Present + Late): %.1f%%%n", AttendanceCube.percentage(counts));
+    }
+    
+    private int currentPersonId() {
+        String sql = "SELECT person_id FROM persons WHERE user_id = ?";
+        
+        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setInt(1, currentUserId);
+            ResultSet rs = pstmt.executeQuery();
+            return rs.next() ? rs.getInt("person_id") : -1;
+        } catch (SQLException e) {
+            System.err.println("Error looking up your person record: " + e.getMessage());
+            return -1;
+        }
+    }
+    
+    private LocalDate readOptionalDate(String prompt) {
+        System.out.print(prompt);
+        String input = scanner.nextLine().trim();
+        return input.isEmpty() ? null : LocalDate.parse(input, dateFormatter);
+    }
+    
     // Modified viewAttendanceByPerson to respect student permissions
     private void viewAttendanceByPerson() {
         if (currentUserRole.equals("Student")) {
@@ -507,4 +1009,196 @@ public class AttendanceSystem {
             System.err.println("Error retrieving your attendance: " + e.getMessage());
         }
     }
+    
+    // Attendance packed per person into bit planes indexed by day number (one bit per day,
+    // 64 days per long). recorded marks days that have a row; lo/hi hold the 2-bit status
+    // code, so each status count over a range is a few bitCounts per word.
+    static class AttendanceCube {
+        static final String[] STATUSES = {"Present", "Absent", "Late", "Leave"};
+        
+        static class Member {
+            final int personId;
+            String name;
+            String department;
+            long[] recorded = new long[0];
+            long[] lo = new long[0];
+            long[] hi = new long[0];
+            
+            Member(int personId, String name, String department) {
+                this.personId = personId;
+                this.name = name;
+                this.department = department;
+            }
+            
+            void ensureCapacity(int words) {
+                if (recorded.length >= words) return;
+                int length = Math.max(words, recorded.length + (recorded.length >> 1));
+                recorded = Arrays.copyOf(recorded, length);
+                lo = Arrays.copyOf(lo, length);
+                hi = Arrays.copyOf(hi, length);
+            }
+            
+            void shift(int words) {
+                if (recorded.length == 0) return;
+                recorded = shifted(recorded, words);
+                lo = shifted(lo, words);
+                hi = shifted(hi, words);
+            }
+            
+            private static long[] shifted(long[] plane, int words) {
+                long[] result = new long[plane.length + words];
+                System.arraycopy(plane, 0, result, words, plane.length);
+                return result;
+            }
+        }
+        
+        private final Map<Integer, Member> members = new HashMap<>();
+        private long originDay;
+        // Latest updated_at applied so far; null until a refresh has seen a row
+        private LocalDateTime highWater;
+        
+        AttendanceCube(LocalDate origin) {
+            this.originDay = origin.toEpochDay();
+        }
+        
+        static AttendanceCube load(Connection connection) throws SQLException {
+            LocalDate origin = LocalDate.now();
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT MIN(date) FROM attendance")) {
+                if (rs.next() && rs.getDate(1) != null) {
+                    origin = rs.getDate(1).toLocalDate();
+                }
+            }
+            AttendanceCube cube = new AttendanceCube(origin);
+            cube.refresh(connection);
+            return cube;
+        }
+        
+        // Rereads persons in full (reports walk every member anyway, and this picks up new, renamed
+        // and moved people) and applies attendance rows written since the high-water mark, or all of
+        // them on the first call
+        void refresh(Connection connection) throws SQLException {
+            String changedSql = "SELECT person_id, date, status, updated_at FROM attendance" +
+                                (highWater == null ? "" : " WHERE updated_at > ?");
+            boolean autoCommit = connection.getAutoCommit();
+            // The driver only streams rows with a fetch size inside a transaction
+            connection.setAutoCommit(false);
+            
+            try (Statement stmt = connection.createStatement();
+                 PreparedStatement changed = connection.prepareStatement(changedSql)) {
+                stmt.setFetchSize(CUBE_LOAD_FETCH_SIZE);
+                Set<Integer> current = new HashSet<>();
+                ResultSet rs = stmt.executeQuery("SELECT person_id, name, department FROM persons");
+                while (rs.next()) {
+                    putMember(rs.getInt("person_id"), rs.getString("name"), rs.getString("department"));
+                    current.add(rs.getInt("person_id"));
+                }
+                members.keySet().retainAll(current);
+                
+                changed.setFetchSize(CUBE_LOAD_FETCH_SIZE);
+                if (highWater != null) {
+                    changed.setTimestamp(1, Timestamp.valueOf(highWater.minus(CUBE_REFRESH_OVERLAP)));
+                }
+                rs = changed.executeQuery();
+                while (rs.next()) {
+                    record(rs.getInt("person_id"), rs.getDate("date").toLocalDate(), rs.getString("status"));
+                    LocalDateTime updatedAt = rs.getTimestamp("updated_at").toLocalDateTime();
+                    if (highWater == null || updatedAt.isAfter(highWater)) {
+                        highWater = updatedAt;
+                    }
+                }
+                
+                connection.commit();
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+        
+        void putMember(int personId, String name, String department) {
+            Member member = members.computeIfAbsent(personId, id -> new Member(id, name, department));
+            member.name = name;
+            member.department = department;
+        }
+        
+        Collection<Member> members() {
+            return members.values();
+        }
+        
+        void record(int personId, LocalDate date, String status) {
+            int code = Arrays.asList(STATUSES).indexOf(status);
+            if (code < 0) return;
+            
+            long day = date.toEpochDay();
+            if (day < originDay) {
+                rebase(day);
+            }
+            
+            Member member = members.computeIfAbsent(personId, id -> new Member(id, null, null));
+            long index = day - originDay;
+            int word = (int) (index >>> 6);
+            long bit = 1L << index;
+            member.ensureCapacity(word + 1);
+            
+            member.recorded[word] |= bit;
+            member.lo[word] = (code & 1) != 0 ? member.lo[word] | bit : member.lo[word] & ~bit;
+            member.hi[word] = (code & 2) != 0 ? member.hi[word] | bit : member.hi[word] & ~bit;
+        }
+        
+        // Moves the origin back in whole words so existing bits never need re-shifting
+        private void rebase(long day) {
+            int words = (int) ((originDay - day + 63) >>> 6);
+            for (Member member : members.values()) {
+                member.shift(words);
+            }
+            originDay -= (long) words << 6;
+        }
+        
+        int[] count(int personId, LocalDate start, LocalDate end) {
+            int[] counts = new int[STATUSES.length];
+            Member member = members.get(personId);
+            if (member != null) {
+                count(member, start, end, counts);
+            }
+            return counts;
+        }
+        
+        // Adds the member's per-status day counts in [start, end] to counts; null bounds are open
+        void count(Member member, LocalDate start, LocalDate end, int[] counts) {
+            long from = start == null ? 0 : Math.max(start.toEpochDay() - originDay, 0);
+            long to = (long) member.recorded.length * 64 - 1;
+            if (end != null) {
+                to = Math.min(end.toEpochDay() - originDay, to);
+            }
+            if (from > to) return;
+            
+            int firstWord = (int) (from >>> 6);
+            int lastWord = (int) (to >>> 6);
+            for (int word = firstWord; word <= lastWord; word++) {
+                long mask = member.recorded[word];
+                if (word == firstWord) mask &= -1L << from;
+                if (word == lastWord) mask &= -1L >>> (63 - (to & 63));
+                
+                long lo = member.lo[word];
+                long hi = member.hi[word];
+                counts[0] += Long.bitCount(mask & ~hi & ~lo);
+                counts[1] += Long.bitCount(mask & ~hi & lo);
+                counts[2] += Long.bitCount(mask & hi & ~lo);
+                counts[3] += Long.bitCount(mask & hi & lo);
+            }
+        }
+        
+        static int total(int[] counts) {
+            int total = 0;
+            for (int count : counts) {
+                total += count;
+            }
+            return total;
+        }
+        
+        // Present and Late both count as attended
+        static double percentage(int[] counts) {
+            int total = total(counts);
+            return total == 0 ? 0 : (counts[0] + counts[2]) * 100.0 / total;
+        }
+    }
 } 
@@ -1,30 +1,370 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.sql.*;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Scanner;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class OnlineBankingSystem {
-    private static final String DB_URL = "jdbc:postgresql://localhost:5432/banking";
+    // reWriteBatchedInserts lets the driver collapse journal batches into multi-row INSERTs.
+    // -Dbanking.db.url points the system at another instance, e.g. a local container. bench, stress and
+    // check-ledger open test accounts, so they refuse to run without it (see requireExplicitDatabase).
+    private static final String DB_URL = System.getProperty("banking.db.url",
+        "jdbc:postgresql://localhost:5432/banking?reWriteBatchedInserts=true");
     private static final String DB_USER = "postgres";
     private static final String DB_PASSWORD = "2002";
+    private static final int POOL_SIZE = 20;
+    private static final long POOL_BORROW_TIMEOUT_MS = 5000;
+    private static final int MAX_TX_ATTEMPTS = 5;
+    private static final long RETRY_BASE_DELAY_MS = 10;
+    private static final long RETRY_MAX_DELAY_MS = 200;
+    private static final int HISTORY_PAGE_SIZE = 20;
+    private static final int HISTORY_FETCH_SIZE = 500;
+    private static final int ACCOUNT_CACHE_SIZE = 10_000;
+    // How long a cached balance is served without rereading the row; bounds staleness from other writers
+    private static final Duration ACCOUNT_CACHE_TTL =
+        Duration.ofMillis(Long.getLong("banking.cache.ttl.ms", 2000));
+    private static final Duration SNAPSHOT_RUN_AFTER_MIDNIGHT = Duration.ofMinutes(5);
+    private static final int ACCOUNT_NUMBER_BLOCK_SIZE = 1000;
+    private static final int IMPORT_BATCH_SIZE = 5000;
+    private static final int MAX_IMPORT_ATTEMPTS = 3;
+    private static final Duration VELOCITY_WINDOW =
+        Duration.ofMinutes(Long.getLong("banking.velocity.window.minutes", 60));
+    private static final int VELOCITY_MAX_COUNT = Integer.getInteger("banking.velocity.max.count", 20);
+    private static final long VELOCITY_MAX_AMOUNT =
+        Money.parse(System.getProperty("banking.velocity.max.amount", "10000.00"));
+    // "block" rejects an operation over the limit, "flag" lets it through and reports it
+    private static final boolean VELOCITY_BLOCK =
+        !System.getProperty("banking.velocity.action", "block").equalsIgnoreCase("flag");
+    // "event-sourced" makes the transactions ledger the source of truth and accounts.balance unused
+    private static final boolean EVENT_SOURCED =
+        System.getProperty("banking.ledger.mode", "balance").equalsIgnoreCase("event-sourced");
+    private static final Duration LEDGER_CHECKPOINT_INTERVAL =
+        Duration.ofMinutes(Long.getLong("banking.ledger.checkpoint.minutes", 15));
+    // Advisory lock key: event-sourced processes hold it exclusively, balance-mode processes shared
+    private static final long LEDGER_WRITER_LOCK_KEY = 4_716_001L;
+    private static final int MAX_FAILED_LOGINS = 5;
+    private static final Duration FAILED_LOGIN_HALF_LIFE = Duration.ofMinutes(10);
+    private static final Duration STANDING_ORDER_TICK = Duration.ofSeconds(30);
+    private static final int DEFAULT_HTTP_PORT = 8080;
     
-    private Connection connection;
+    private ConnectionPool pool;
+    private ExecutorService sessionExecutor;
+    private ScheduledExecutorService maintenanceScheduler;
+    private final AccountCache accountCache = new AccountCache(ACCOUNT_CACHE_SIZE, ACCOUNT_CACHE_TTL);
+    private final AccountNumberAllocator accountNumbers = new AccountNumberAllocator(ACCOUNT_NUMBER_BLOCK_SIZE);
+    private LedgerProjection ledger;
+    // Dedicated session holding the ledger writer advisory lock until shutdown
+    private Connection writerLock;
+    private final PriorityQueue<StandingOrder> dueOrders =
+        new PriorityQueue<>((a, b) -> a.getNextRun().compareTo(b.getNextRun()));
+    private final LoginThrottle loginThrottle = new LoginThrottle(MAX_FAILED_LOGINS, FAILED_LOGIN_HALF_LIFE);
+    private final VelocityGuard velocityGuard;
+    // Off only in the benchmark's comparison phase, which measures what journal batching saves
+    private volatile boolean batchJournal = true;
     private Scanner scanner;
     
     public OnlineBankingSystem() {
+        this(POOL_SIZE);
+    }
+    
+    public OnlineBankingSystem(int poolSize) {
+        this(poolSize, new VelocityGuard(VELOCITY_WINDOW, VELOCITY_MAX_COUNT, VELOCITY_MAX_AMOUNT, VELOCITY_BLOCK));
+    }
+    
+    public OnlineBankingSystem(int poolSize, VelocityGuard velocityGuard) {
+        this.velocityGuard = velocityGuard;
         try {
-            connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+            pool = new ConnectionPool(DB_URL, DB_USER, DB_PASSWORD, poolSize, POOL_BORROW_TIMEOUT_MS);
+            sessionExecutor = newSessionExecutor();
             scanner = new Scanner(System.in);
             createTablesIfNotExist();
+            acquireWriterLock();
+            if (EVENT_SOURCED) {
+                setBalancesStale();
+                ledger = new LedgerProjection();
+                replayLedger(ledger);
+            } else {
+                syncBalancesIfStale();
+            }
+            rebuildVelocityWindows();
+            loadStandingOrders();
         } catch (SQLException e) {
             System.err.println("Error connecting to database: " + e.getMessage());
             System.exit(1);
         }
     }
     
+    // One virtual thread per session where the runtime has them (JDK 21+),
+    // otherwise a cached pool; the connection pool bounds database concurrency either way.
+    private static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+    
+    public <T> Future<T> submitSession(Callable<T> session) {
+        return sessionExecutor.submit(session);
+    }
+    
+    // Only interactive and server runs execute standing orders and snapshots; one-shot modes such as
+    // verify-ledger, bench and import must not move money or write alongside the projection
+    private void startMaintenanceScheduler() {
+        if (maintenanceScheduler != null) {
+            return;
+        }
+        maintenanceScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "banking-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        // The first pass executes anything that fell due while the system was down
+        maintenanceScheduler.scheduleWithFixedDelay(this::runDueStandingOrders,
+            0, STANDING_ORDER_TICK.toMillis(), TimeUnit.MILLISECONDS);
+        
+        // Catch up on any days missed while the system was down, then run shortly after each midnight
+        maintenanceScheduler.execute(this::snapshotCompletedDays);
+        LocalDateTime nextRun = LocalDate.now().plusDays(1).atStartOfDay().plus(SNAPSHOT_RUN_AFTER_MIDNIGHT);
+        maintenanceScheduler.scheduleAtFixedRate(this::snapshotCompletedDays,
+            Duration.between(LocalDateTime.now(), nextRun).toMillis(),
+            TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS);
+        
+        long purgeMillis = VELOCITY_WINDOW.toMillis();
+        maintenanceScheduler.scheduleAtFixedRate(velocityGuard::purgeIdle, purgeMillis, purgeMillis, TimeUnit.MILLISECONDS);
+        
+        long throttlePurgeMillis = FAILED_LOGIN_HALF_LIFE.toMillis();
+        maintenanceScheduler.scheduleAtFixedRate(loginThrottle::purgeDecayed,
+            throttlePurgeMillis, throttlePurgeMillis, TimeUnit.MILLISECONDS);
+        
+        if (ledger != null) {
+            long checkpointMillis = LEDGER_CHECKPOINT_INTERVAL.toMillis();
+            maintenanceScheduler.scheduleAtFixedRate(() -> {
+                try {
+                    checkpointLedger();
+                } catch (SQLException | BankingException e) {
+                    System.err.println("Error checkpointing ledger: " + e.getMessage());
+                }
+            }, checkpointMillis, checkpointMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    // Replays the outflows still inside the velocity window so limits survive a restart
+    private void rebuildVelocityWindows() throws SQLException {
+        String sql = "SELECT account_number, amount, timestamp FROM transactions " +
+                     "WHERE timestamp >= ? AND amount < 0 ORDER BY timestamp, id";
+        
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setFetchSize(HISTORY_FETCH_SIZE);
+                pstmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now().minus(VELOCITY_WINDOW)));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        velocityGuard.record(rs.getString("account_number"),
+                            -Money.fromDecimal(rs.getBigDecimal("amount")),
+                            rs.getTimestamp("timestamp").getTime());
+                    }
+                }
+            }
+        }
+    }
+    
+    private void snapshotCompletedDays() {
+        try {
+            int days = snapshotDailyBalances(LocalDate.now().minusDays(1));
+            if (days > 0) {
+                System.out.println("\n[maintenance] Daily balance snapshots updated for " + days + " day(s).");
+            }
+        } catch (SQLException e) {
+            System.err.println("Error snapshotting daily balances: " + e.getMessage());
+        }
+    }
+    
+    public void shutdown() {
+        if (maintenanceScheduler != null) {
+            maintenanceScheduler.shutdownNow();
+        }
+        sessionExecutor.shutdown();
+        try {
+            if (!sessionExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                sessionExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            sessionExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        if (ledger != null) {
+            // Leave accounts.balance current so a later balance-mode start can trust it
+            try {
+                syncBalancesIfStale();
+            } catch (SQLException e) {
+                System.err.println("Error writing ledger balances back: " + e.getMessage());
+            }
+        }
+        if (writerLock != null) {
+            try {
+                writerLock.close();
+            } catch (SQLException e) {
+                System.err.println("Error releasing ledger writer lock: " + e.getMessage());
+            }
+        }
+        pool.close();
+    }
+    
+    // Event-sourced writes check funds against this process's projection, so no other process may
+    // write while one runs. Balance-mode processes share the lock among themselves; the lock lives as
+    // long as the dedicated session, so a crashed process releases it too.
+    private void acquireWriterLock() throws SQLException {
+        writerLock = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        String sql = EVENT_SOURCED ? "SELECT pg_try_advisory_lock(?)" : "SELECT pg_try_advisory_lock_shared(?)";
+        try (PreparedStatement pstmt = writerLock.prepareStatement(sql)) {
+            pstmt.setLong(1, LEDGER_WRITER_LOCK_KEY);
+            ResultSet rs = pstmt.executeQuery();
+            rs.next();
+            if (!rs.getBoolean(1)) {
+                System.err.println(EVENT_SOURCED
+                    ? "Error: another process is using the ledger; event-sourced mode needs to be the only writer."
+                    : "Error: an event-sourced process is running; balance mode cannot start alongside it.");
+                System.exit(1);
+            }
+        }
+    }
+    
+    private void setBalancesStale() throws SQLException {
+        try (ConnectionPool.Lease lease = pool.borrow();
+             Statement stmt = lease.connection().createStatement()) {
+            stmt.executeUpdate("UPDATE ledger_checkpoint_state SET balances_stale = TRUE WHERE id = 1");
+        }
+    }
+    
+    // Recomputes accounts.balance from the checkpoints plus the ledger tail if an event-sourced run
+    // left it behind, then clears the flag in the same transaction. Runs when event-sourced mode shuts
+    // down, and again at balance-mode start in case that process died first.
+    private void syncBalancesIfStale() throws SQLException {
+        String staleSql = "SELECT balances_stale FROM ledger_checkpoint_state WHERE id = 1 FOR UPDATE";
+        String syncSql = "UPDATE accounts a SET balance = l.total, version = a.version + 1 " +
+                         "FROM (SELECT account_number, SUM(amount) AS total FROM (" +
+                         "          SELECT account_number, balance AS amount FROM ledger_checkpoints " +
+                         "          UNION ALL " +
+                         "          SELECT account_number, amount FROM transactions " +
+                         "          WHERE id > (SELECT last_id FROM ledger_checkpoint_state WHERE id = 1)) r " +
+                         "      GROUP BY account_number) l " +
+                         "WHERE a.account_number = l.account_number AND a.balance <> l.total";
+        String clearSql = "UPDATE ledger_checkpoint_state SET balances_stale = FALSE WHERE id = 1";
+        
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                try (ResultSet rs = stmt.executeQuery(staleSql)) {
+                    if (!rs.next() || !rs.getBoolean(1)) {
+                        conn.commit();
+                        return;
+                    }
+                }
+                int updated = stmt.executeUpdate(syncSql);
+                stmt.executeUpdate(clearSql);
+                conn.commit();
+                System.out.println("Synchronized " + updated + " account balance(s) with the ledger.");
+            }
+        }
+    }
+    
+    private <T> T inTransaction(TransactionWork<T> work) throws SQLException, BankingException {
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+            try (TransactionJournal journal = new TransactionJournal(conn, batchJournal)) {
+                T result = work.execute(conn, journal);
+                journal.flush();
+                conn.commit();
+                return result;
+            } catch (SQLException | BankingException | RuntimeException e) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    e.addSuppressed(ex);
+                }
+                throw e;
+            }
+        }
+    }
+    
+    // Retries serialization failures and deadlocks with capped, jittered exponential backoff
+    private <T> T inTransactionWithRetry(TransactionWork<T> work) throws SQLException, BankingException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return inTransaction(work);
+            } catch (SQLException e) {
+                if (!isRetryable(e) || attempt >= MAX_TX_ATTEMPTS) {
+                    throw e;
+                }
+                long ceiling = Math.min(RETRY_MAX_DELAY_MS, RETRY_BASE_DELAY_MS << (attempt - 1));
+                try {
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+    
+    private static boolean isRetryable(SQLException e) {
+        String state = e.getSQLState();
+        return "40001".equals(state) || "40P01".equals(state);
+    }
+    
     private void createTablesIfNotExist() throws SQLException {
         String createAccountsTable = "CREATE TABLE IF NOT EXISTS accounts (" +
                                     "account_number VARCHAR(10) PRIMARY KEY, " +
@@ -33,25 +373,223 @@ public class OnlineBankingSystem {
                                     "pin VARCHAR(4) NOT NULL, " +
                                     "balance DECIMAL(10, 2) NOT NULL DEFAULT 0)";
         
+        String createStandingOrdersTable = "CREATE TABLE IF NOT EXISTS standing_orders (" +
+                                           "order_id SERIAL PRIMARY KEY, " +
+                                           "from_account VARCHAR(10) NOT NULL REFERENCES accounts(account_number), " +
+                                           "to_account VARCHAR(10) NOT NULL REFERENCES accounts(account_number), " +
+                                           "amount DECIMAL(10, 2) NOT NULL CHECK (amount > 0), " +
+                                           "interval_days INTEGER NOT NULL CHECK (interval_days > 0), " +
+                                           "next_run TIMESTAMP NOT NULL, " +
+                                           "active BOOLEAN NOT NULL DEFAULT TRUE)";
+        
+        String createStandingOrderIndex = "CREATE INDEX IF NOT EXISTS idx_standing_orders_due " +
+                                          "ON standing_orders (next_run) WHERE active";
+        
         String createTransactionsTable = "CREATE TABLE IF NOT EXISTS transactions (" +
                                        "id SERIAL PRIMARY KEY, " +
                                        "account_number VARCHAR(10) REFERENCES accounts(account_number), " +
-                                       "transaction_type VARCHAR(20) NOT NULL, " +
+                                       "transaction_type VARCHAR(30) NOT NULL, " +
                                        "amount DECIMAL(10, 2) NOT NULL, " +
                                        "timestamp TIMESTAMP NOT NULL)";
         
-        try (Statement stmt = connection.createStatement()) {
+        // PINs are stored as salted hashes; the plaintext column is cleared as each legacy account logs in
+        String addPinHashColumn = "ALTER TABLE accounts ADD COLUMN IF NOT EXISTS pin_hash VARCHAR(64)";
+        String addPinSaltColumn = "ALTER TABLE accounts ADD COLUMN IF NOT EXISTS pin_salt VARCHAR(32)";
+        String relaxPinColumn = "ALTER TABLE accounts ALTER COLUMN pin DROP NOT NULL";
+        
+        // Bumped by every balance change; lets the cache keep only the newest snapshot of a row
+        String addVersionColumn = "ALTER TABLE accounts ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0";
+        
+        // Sparse end-of-day balances: a row exists only for days on which the account moved
+        String createDailyBalancesTable = "CREATE TABLE IF NOT EXISTS account_daily_balances (" +
+                                         "account_number VARCHAR(10) REFERENCES accounts(account_number), " +
+                                         "balance_date DATE NOT NULL, " +
+                                         "closing_balance DECIMAL(12, 2) NOT NULL, " +
+                                         "PRIMARY KEY (account_number, balance_date))";
+        // Last day the snapshot job has folded, including days with no activity
+        String createDailyBalanceWatermark = "CREATE TABLE IF NOT EXISTS daily_balance_watermark (" +
+                                             "id INTEGER PRIMARY KEY CHECK (id = 1), " +
+                                             "processed_through DATE NOT NULL)";
+        
+        // Each nextval reserves a whole block of account numbers for one process
+        String createAccountNumberSequence = "CREATE SEQUENCE IF NOT EXISTS account_number_blocks " +
+                                             "START WITH 1000000000 INCREMENT BY " + ACCOUNT_NUMBER_BLOCK_SIZE +
+                                             " MAXVALUE " + (9_999_999_999L - ACCOUNT_NUMBER_BLOCK_SIZE + 1);
+        
+        // Event-sourced mode: per-account balances folded up to ledger_checkpoint_state.last_id.
+        // balances_stale is set while event-sourced writes bypass accounts.balance
+        String createLedgerCheckpoints = "CREATE TABLE IF NOT EXISTS ledger_checkpoints (" +
+                                         "account_number VARCHAR(10) PRIMARY KEY REFERENCES accounts(account_number), " +
+                                         "balance DECIMAL(14, 2) NOT NULL)";
+        String createLedgerCheckpointState = "CREATE TABLE IF NOT EXISTS ledger_checkpoint_state (" +
+                                             "id INTEGER PRIMARY KEY CHECK (id = 1), " +
+                                             "last_id BIGINT NOT NULL, " +
+                                             "balances_stale BOOLEAN NOT NULL DEFAULT FALSE)";
+        String seedLedgerCheckpointState = "INSERT INTO ledger_checkpoint_state (id, last_id) VALUES (1, 0) " +
+                                           "ON CONFLICT (id) DO NOTHING";
+        
+        // Lets the snapshot job read one day of ledger rows across all accounts
+        String createTimeIndex = "CREATE INDEX IF NOT EXISTS idx_transactions_time ON transactions (timestamp)";
+        
+        // Serves the keyset seek in fetchTransactionHistory without a sort
+        String createHistoryIndex = "CREATE INDEX IF NOT EXISTS idx_transactions_account_time " +
+                                    "ON transactions (account_number, timestamp DESC, id DESC)";
+        
+        try (ConnectionPool.Lease lease = pool.borrow();
+             Statement stmt = lease.connection().createStatement()) {
             stmt.execute(createAccountsTable);
+            stmt.execute(addVersionColumn);
+            stmt.execute(addPinHashColumn);
+            stmt.execute(addPinSaltColumn);
+            stmt.execute(relaxPinColumn);
             stmt.execute(createTransactionsTable);
+            widenTransactionType(stmt);
+            stmt.execute(createHistoryIndex);
+            stmt.execute(createTimeIndex);
+            stmt.execute(createDailyBalancesTable);
+            stmt.execute(createDailyBalanceWatermark);
+            stmt.execute(createAccountNumberSequence);
+            stmt.execute(createLedgerCheckpoints);
+            stmt.execute(createLedgerCheckpointState);
+            stmt.execute(seedLedgerCheckpointState);
+            stmt.execute(createStandingOrdersTable);
+            stmt.execute(createStandingOrderIndex);
         }
     }
     
+    // 'TRANSFER_FROM_' plus a 10-digit account number does not fit in the original VARCHAR(20).
+    // Checked first because the ALTER takes an ACCESS EXCLUSIVE lock on the ledger.
+    private static void widenTransactionType(Statement stmt) throws SQLException {
+        String sql = "SELECT character_maximum_length FROM information_schema.columns " +
+                     "WHERE table_schema = current_schema() AND table_name = 'transactions' " +
+                     "AND column_name = 'transaction_type'";
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            if (!rs.next() || rs.getInt(1) >= 30) {
+                return;
+            }
+        }
+        stmt.execute("ALTER TABLE transactions ALTER COLUMN transaction_type TYPE VARCHAR(30)");
+    }
+    
     public static void main(String[] args) {
+        // java OnlineBankingSystem verify-ledger
+        if (args.length == 1 && args[0].equals("verify-ledger")) {
+            OnlineBankingSystem bank = new OnlineBankingSystem();
+            try {
+                int mismatches = bank.verifyLedger();
+                System.out.println(mismatches == 0 ? "Ledger verified: every balance matches."
+                                                   : mismatches + " account(s) do not match the ledger.");
+            } catch (SQLException e) {
+                System.err.println("Error verifying ledger: " + e.getMessage());
+            } finally {
+                bank.shutdown();
+            }
+            return;
+        }
+        
+        // java OnlineBankingSystem check-money [cases] [seed]
+        if (args.length >= 1 && args[0].equals("check-money")) {
+            int cases = args.length > 1 ? Integer.parseInt(args[1]) : MoneyPropertyCheck.DEFAULT_CASES;
+            long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+            System.exit(new MoneyPropertyCheck(cases, seed).run() ? 0 : 1);
+        }
+        
+        // java OnlineBankingSystem check-ledger [operations] [seed]
+        if (args.length >= 1 && args[0].equals("check-ledger")) {
+            requireExplicitDatabase("check-ledger");
+            int operations = args.length > 1 ? Integer.parseInt(args[1]) : LedgerPropertyCheck.DEFAULT_OPERATIONS;
+            long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+            OnlineBankingSystem bank = new OnlineBankingSystem(POOL_SIZE, Benchmark.unlimitedGuard());
+            boolean passed = false;
+            try {
+                passed = new LedgerPropertyCheck(bank, operations, seed).run();
+            } catch (Exception e) {
+                System.err.println("Ledger check failed: " + e.getMessage());
+            } finally {
+                bank.shutdown();
+            }
+            System.exit(passed ? 0 : 1);
+        }
+        
+        // java OnlineBankingSystem bench [threads] [measureSeconds]
+        if (args.length >= 1 && args[0].equals("bench")) {
+            requireExplicitDatabase("bench");
+            int threads = args.length > 1 ? Integer.parseInt(args[1]) : Benchmark.DEFAULT_THREADS;
+            int seconds = args.length > 2 ? Integer.parseInt(args[2]) : Benchmark.DEFAULT_MEASURE_SECONDS;
+            OnlineBankingSystem bank = new OnlineBankingSystem(threads, Benchmark.unlimitedGuard());
+            try {
+                new Benchmark(bank, threads, Duration.ofSeconds(seconds)).run();
+            } catch (Exception e) {
+                System.err.println("Benchmark failed: " + e.getMessage());
+            } finally {
+                bank.shutdown();
+            }
+            return;
+        }
+        
+        // java OnlineBankingSystem stress [threads] [operationsPerThread]
+        if (args.length >= 1 && args[0].equals("stress")) {
+            requireExplicitDatabase("stress");
+            int threads = args.length > 1 ? Integer.parseInt(args[1]) : StressTest.DEFAULT_THREADS;
+            int operations = args.length > 2 ? Integer.parseInt(args[2]) : StressTest.DEFAULT_OPERATIONS;
+            OnlineBankingSystem bank = new OnlineBankingSystem(threads, Benchmark.unlimitedGuard());
+            boolean passed = false;
+            try {
+                passed = new StressTest(bank, threads, operations).run();
+            } catch (Exception e) {
+                System.err.println("Stress test failed: " + e.getMessage());
+            } finally {
+                bank.shutdown();
+            }
+            System.exit(passed ? 0 : 1);
+        }
+        
+        // java OnlineBankingSystem serve [port] [bind-address]
+        // Listens on loopback only unless a bind address such as 0.0.0.0 is given explicitly
+        if (args.length >= 1 && args[0].equals("serve")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_HTTP_PORT;
+            OnlineBankingSystem bank = new OnlineBankingSystem();
+            try {
+                InetAddress bindAddress = args.length > 2 ? InetAddress.getByName(args[2])
+                                                          : InetAddress.getLoopbackAddress();
+                HttpApi api = new HttpApi(bank, new InetSocketAddress(bindAddress, port));
+                bank.startMaintenanceScheduler();
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    api.stop();
+                    bank.shutdown();
+                }));
+                api.start();
+                System.out.println("Banking API listening on " + bindAddress.getHostAddress() + ":" + port);
+            } catch (IOException e) {
+                System.err.println("Error starting API: " + e.getMessage());
+                bank.shutdown();
+            }
+            return;
+        }
+        
         OnlineBankingSystem bank = new OnlineBankingSystem();
+        
+        // java OnlineBankingSystem import <customers.csv> <assigned-accounts.csv>
+        if (args.length == 3 && args[0].equals("import")) {
+            bank.runImport(Paths.get(args[1]), Paths.get(args[2]));
+            bank.shutdown();
+            return;
+        }
+        
         bank.run();
     }
     
+    // Test modes fill the database with throwaway accounts; never let them default to the real one
+    private static void requireExplicitDatabase(String mode) {
+        if (System.getProperty("banking.db.url") == null) {
+            System.err.println("Error: " + mode + " creates test accounts; point it at a scratch database with " +
+                               "-Dbanking.db.url=jdbc:postgresql://host:port/db");
+            System.exit(1);
+        }
+    }
+    
     public void run() {
+        startMaintenanceScheduler();
         System.out.println("Welcome to Online Banking System");
         
         while (true) {
@@ -72,12 +610,15 @@ public class OnlineBankingSystem {
                     }
                     break;
                 case 3:
+                    System.out.print("Enter path of customer CSV (first_name,last_name,pin): ");
+                    Path input = Paths.get(scanner.nextLine().trim());
+                    System.out.print("Enter path to write assigned account numbers: ");
+                    Path output = Paths.get(scanner.nextLine().trim());
+                    runImport(input, output);
+                    break;
+                case 4:
                     System.out.println("Thank you for using our banking system. Goodbye!");
-                    try {
-                        if (connection != null) connection.close();
-                    } catch (SQLException e) {
-                        System.err.println("Error closing connection: " + e.getMessage());
-                    }
+                    shutdown();
                     System.exit(0);
                 default:
                     System.out.println("Invalid choice. Please try again.");
@@ -89,7 +630,8 @@ public class OnlineBankingSystem {
         System.out.println("\nMain Menu:");
         System.out.println("1. Create New Account");
         System.out.println("2. Login to Account");
-        System.out.println("3. Exit");
+        System.out.println("3. Bulk Import Accounts (CSV)");
+        System.out.println("4. Exit");
         System.out.print("Enter your choice: ");
     }
     
@@ -102,7 +644,9 @@ public class OnlineBankingSystem {
             System.out.println("4. View Transaction History");
             System.out.println("5. Change PIN");
             System.out.println("6. View Account Info");
-            System.out.println("7. Logout");
+            System.out.println("7. Monthly Statement");
+            System.out.println("8. Standing Orders");
+            System.out.println("9. Logout");
             System.out.print("Enter your choice: ");
             
             int choice = getIntInput();
@@ -128,6 +672,12 @@ public class OnlineBankingSystem {
                     account.display();
                     break;
                 case 7:
+                    viewMonthlyStatement(account);
+                    break;
+                case 8:
+                    manageStandingOrders(account);
+                    break;
+                case 9:
                     System.out.println("Logging out...");
                     return;
                 default:
@@ -144,21 +694,14 @@ public class OnlineBankingSystem {
         return scanner.nextInt();
     }
     
-    private double getDoubleInput() {
-        while (!scanner.hasNextDouble()) {
-            System.out.println("Please enter a valid amount.");
-            scanner.next();
-        }
-        return scanner.nextDouble();
-    }
-    
-    private String generateAccountNumber() {
-        Random random = new Random();
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < 10; i++) {
-            sb.append(random.nextInt(10));
+    private long getAmountInput() {
+        while (true) {
+            try {
+                return Money.parse(scanner.next());
+            } catch (NumberFormatException e) {
+                System.out.println("Please enter a valid amount.");
+            }
         }
-        return sb.toString();
     }
     
     private boolean isValidPin(String pin) {
@@ -200,21 +743,23 @@ public class OnlineBankingSystem {
             }
         } while (!isValidPin(pin));
         
-        String accountNumber;
-        boolean accountExists;
-        do {
-            accountNumber = generateAccountNumber();
-            accountExists = checkAccountExists(accountNumber);
-        } while (accountExists);
-        
-        String sql = "INSERT INTO accounts (account_number, first_name, last_name, pin) VALUES (?, ?, ?, ?)";
+        // Numbers come from a reserved block; only accounts created before the sequence existed can collide
+        String sql = "INSERT INTO accounts (account_number, first_name, last_name, pin_hash, pin_salt) " +
+                     "VALUES (?, ?, ?, ?, ?) ON CONFLICT (account_number) DO NOTHING";
+        String pinSalt = PinHasher.newSalt();
+        String pinHash = PinHasher.hash(pin, pinSalt);
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, accountNumber);
-            pstmt.setString(2, firstName);
-            pstmt.setString(3, lastName);
-            pstmt.setString(4, pin);
-            pstmt.executeUpdate();
+        try (ConnectionPool.Lease lease = pool.borrow();
+             PreparedStatement pstmt = lease.connection().prepareStatement(sql)) {
+            String accountNumber;
+            do {
+                accountNumber = accountNumbers.next(lease.connection());
+                pstmt.setString(1, accountNumber);
+                pstmt.setString(2, firstName);
+                pstmt.setString(3, lastName);
+                pstmt.setString(4, pinHash);
+                pstmt.setString(5, pinSalt);
+            } while (pstmt.executeUpdate() == 0);
             
             System.out.println("\nAccount created successfully!");
             System.out.println("Your account number is: " + accountNumber);
@@ -224,16 +769,120 @@ public class OnlineBankingSystem {
         }
     }
     
-    private boolean checkAccountExists(String accountNumber) {
-        String sql = "SELECT 1 FROM accounts WHERE account_number = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, accountNumber);
-            ResultSet rs = pstmt.executeQuery();
-            return rs.next();
+    private void runImport(Path input, Path output) {
+        try {
+            long started = System.nanoTime();
+            ImportResult result = importAccounts(input, output);
+            System.out.printf("Imported %d accounts (%d rows rejected) in %d ms. Account numbers written to %s%n",
+                result.getImported(), result.getRejected(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), output);
+        } catch (IOException e) {
+            System.err.println("Error reading or writing import files: " + e.getMessage());
         } catch (SQLException e) {
-            System.err.println("Error checking account: " + e.getMessage());
-            return false;
+            System.err.println("Error importing accounts: " + e.getMessage());
+        }
+    }
+    
+    // Streams a first_name,last_name,pin CSV into accounts in batched chunks, one transaction per chunk.
+    // Every imported row's assigned account number is written to `output` once its chunk commits.
+    public ImportResult importAccounts(Path input, Path output) throws IOException, SQLException {
+        String insertSql = "INSERT INTO accounts (account_number, first_name, last_name, pin_hash, pin_salt) " +
+                           "VALUES (?, ?, ?, ?, ?)";
+        int imported = 0;
+        int rejected = 0;
+        List<String[]> chunk = new ArrayList<>(IMPORT_BATCH_SIZE);
+        
+        try (BufferedReader reader = Files.newBufferedReader(input);
+             BufferedWriter writer = Files.newBufferedWriter(output);
+             ConnectionPool.Lease lease = pool.borrow()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+            writer.write("account_number,first_name,last_name");
+            writer.newLine();
+            
+            try (PreparedStatement pstmt = conn.prepareStatement(insertSql)) {
+                String line;
+                int lineNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (line.isBlank() || (lineNumber == 1 && line.toLowerCase().startsWith("first_name"))) {
+                        continue;
+                    }
+                    
+                    String[] fields = line.split(",", -1);
+                    if (fields.length != 3) {
+                        System.err.println("Line " + lineNumber + " rejected: expected 3 fields");
+                        rejected++;
+                        continue;
+                    }
+                    String firstName = fields[0].trim();
+                    String lastName = fields[1].trim();
+                    String pin = fields[2].trim();
+                    if (!isValidName(firstName) || !isValidName(lastName) || !isValidPin(pin)) {
+                        System.err.println("Line " + lineNumber + " rejected: invalid name or PIN");
+                        rejected++;
+                        continue;
+                    }
+                    
+                    String pinSalt = PinHasher.newSalt();
+                    chunk.add(new String[] {firstName, lastName, PinHasher.hash(pin, pinSalt), pinSalt});
+                    if (chunk.size() == IMPORT_BATCH_SIZE) {
+                        imported += writeImportChunk(conn, pstmt, chunk, writer);
+                        chunk.clear();
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    imported += writeImportChunk(conn, pstmt, chunk, writer);
+                }
+            }
         }
+        return new ImportResult(imported, rejected);
+    }
+    
+    private int writeImportChunk(Connection conn, PreparedStatement pstmt, List<String[]> chunk,
+                                 BufferedWriter writer) throws SQLException, IOException {
+        String[] assigned = new String[chunk.size()];
+        for (int attempt = 1; ; attempt++) {
+            for (int i = 0; i < chunk.size(); i++) {
+                String[] row = chunk.get(i);
+                assigned[i] = accountNumbers.next(conn);
+                pstmt.setString(1, assigned[i]);
+                pstmt.setString(2, row[0]);
+                pstmt.setString(3, row[1]);
+                pstmt.setString(4, row[2]);
+                pstmt.setString(5, row[3]);
+                pstmt.addBatch();
+            }
+            
+            try {
+                pstmt.executeBatch();
+                conn.commit();
+                break;
+            } catch (SQLException e) {
+                pstmt.clearBatch();
+                conn.rollback();
+                // A reserved number hit a legacy randomly generated account; redo the chunk with fresh numbers
+                if (!isUniqueViolation(e) || attempt >= MAX_IMPORT_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+        
+        for (int i = 0; i < chunk.size(); i++) {
+            String[] row = chunk.get(i);
+            writer.write(assigned[i] + "," + row[0] + "," + row[1]);
+            writer.newLine();
+        }
+        return chunk.size();
+    }
+    
+    private static boolean isUniqueViolation(SQLException e) {
+        for (SQLException current = e; current != null; current = current.getNextException()) {
+            if ("23505".equals(current.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
     }
     
     public Account login() {
@@ -244,245 +893,1103 @@ public class OnlineBankingSystem {
         System.out.print("Enter PIN: ");
         String pin = scanner.nextLine();
         
-        String sql = "SELECT * FROM accounts WHERE account_number = ? AND pin = ?";
+        try {
+            return authenticate(accountNumber, pin);
+        } catch (BankingException e) {
+            System.out.println(e.getMessage());
+        } catch (SQLException e) {
+            System.err.println("Error logging in: " + e.getMessage());
+        }
+        
+        return null;
+    }
+    
+    // Returns null for a wrong account number or PIN, and throws while the account is locked out
+    public Account authenticate(String accountNumber, String pin) throws SQLException, BankingException {
+        // Locked accounts are turned away before any database or hashing work
+        if (loginThrottle.isLocked(accountNumber)) {
+            throw new BankingException("Too many failed attempts. Please try again later.");
+        }
+        
+        String sql = "SELECT first_name, last_name, balance, version, pin, pin_hash, pin_salt " +
+                     "FROM accounts WHERE account_number = ?";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (ConnectionPool.Lease lease = pool.borrow();
+             PreparedStatement pstmt = lease.connection().prepareStatement(sql)) {
             pstmt.setString(1, accountNumber);
-            pstmt.setString(2, pin);
             ResultSet rs = pstmt.executeQuery();
             
             if (rs.next()) {
-                String firstName = rs.getString("first_name");
-                String lastName = rs.getString("last_name");
-                double balance = rs.getDouble("balance");
-                return new Account(accountNumber, firstName, lastName, pin, balance);
+                String pinHash = rs.getString("pin_hash");
+                String pinSalt = rs.getString("pin_salt");
+                boolean verified;
+                if (pinHash != null) {
+                    verified = PinHasher.matches(pin, pinSalt, pinHash);
+                } else {
+                    // Legacy plaintext row: check once, then replace it with a salted hash
+                    verified = pin.equals(rs.getString("pin"));
+                    if (verified) {
+                        pinSalt = PinHasher.newSalt();
+                        pinHash = PinHasher.hash(pin, pinSalt);
+                        storePinHash(lease.connection(), accountNumber, pinHash, pinSalt);
+                    }
+                }
+                
+                if (verified) {
+                    loginThrottle.recordSuccess(accountNumber);
+                    String firstName = rs.getString("first_name");
+                    String lastName = rs.getString("last_name");
+                    long balance = Money.fromDecimal(rs.getBigDecimal("balance"));
+                    if (ledger != null) {
+                        balance = ledger.balance(accountNumber);
+                    } else {
+                        accountCache.put(accountNumber, new BalanceSnapshot(balance, rs.getLong("version")));
+                    }
+                    return new Account(accountNumber, firstName, lastName, pinHash, pinSalt, balance);
+                }
             }
-        } catch (SQLException e) {
-            System.err.println("Error logging in: " + e.getMessage());
         }
-        
+        loginThrottle.recordFailure(accountNumber);
         return null;
     }
     
+    private void storePinHash(Connection conn, String accountNumber, String pinHash, String pinSalt)
+            throws SQLException {
+        String sql = "UPDATE accounts SET pin_hash = ?, pin_salt = ?, pin = NULL WHERE account_number = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, pinHash);
+            pstmt.setString(2, pinSalt);
+            pstmt.setString(3, accountNumber);
+            pstmt.executeUpdate();
+        }
+    }
+    
     public void deposit(Account account) {
         System.out.println("\nDeposit Money");
         System.out.println("-------------");
-        System.out.println("Current Balance: $" + account.getBalance());
+        refreshBalance(account);
+        System.out.println("Current Balance: $" + Money.format(account.getBalance()));
         System.out.print("Enter amount to deposit: $");
-        double amount = getDoubleInput();
+        long amount = getAmountInput();
         scanner.nextLine(); // Consume newline
         
-        if (amount <= 0) {
-            System.out.println("Invalid amount. Deposit failed.");
-            return;
+        OperationResult result = execute(OperationRequest.deposit(account.getAccountNumber(), amount));
+        if (result.isSuccess()) {
+            account.setBalance(result.getBalance());
+            System.out.println("Deposit successful. New balance: $" + Money.format(account.getBalance()));
+        } else if (result.getStatus() == OperationResult.Status.REJECTED) {
+            System.out.println(result.getMessage() + " Deposit failed.");
+        } else {
+            System.err.println("Error depositing money: " + result.getMessage());
         }
-        
-        String updateSql = "UPDATE accounts SET balance = balance + ? WHERE account_number = ?";
-        
-        try {
-            connection.setAutoCommit(false);
-            
-            try (PreparedStatement pstmt = connection.prepareStatement(updateSql)) {
-                pstmt.setDouble(1, amount);
-                pstmt.setString(2, account.getAccountNumber());
-                pstmt.executeUpdate();
-            }
-            
-            logTransaction(account.getAccountNumber(), "DEPOSIT", amount);
-            
-            connection.commit();
-            account.setBalance(account.getBalance() + amount);
-            System.out.println("Deposit successful. New balance: $" + account.getBalance());
-        } catch (SQLException e) {
-            try {
-                connection.rollback();
-            } catch (SQLException ex) {
-                System.err.println("Error rolling back transaction: " + ex.getMessage());
-            }
-            System.err.println("Error depositing money: " + e.getMessage());
-        } finally {
-            try {
-                connection.setAutoCommit(true);
-            } catch (SQLException e) {
-                System.err.println("Error resetting auto-commit: " + e.getMessage());
-            }
+    }
+    
+    public long depositFunds(String accountNumber, long amount) throws SQLException, BankingException {
+        if (ledger != null) {
+            return appendLedgerEntries(null, null, accountNumber, "DEPOSIT", amount);
         }
+        BalanceSnapshot updated = inTransactionWithRetry((conn, journal) -> {
+            BalanceSnapshot next = adjustBalance(conn, accountNumber, amount, false);
+            if (next == null) {
+                throw new BankingException("Account not found.");
+            }
+            journal.append(accountNumber, "DEPOSIT", amount);
+            return next;
+        });
+        accountCache.put(accountNumber, updated);
+        return updated.getBalance();
     }
     
     public void withdraw(Account account) {
         System.out.println("\nWithdraw Money");
         System.out.println("--------------");
-        System.out.println("Current Balance: $" + account.getBalance());
+        refreshBalance(account);
+        System.out.println("Current Balance: $" + Money.format(account.getBalance()));
         System.out.print("Enter amount to withdraw: $");
-        double amount = getDoubleInput();
+        long amount = getAmountInput();
         scanner.nextLine(); // Consume newline
         
-        if (amount <= 0) {
-            System.out.println("Invalid amount. Withdrawal failed.");
-            return;
-        }
-        
-        if (account.getBalance() < amount) {
-            System.out.println("Insufficient funds. Withdrawal failed.");
-            return;
+        OperationResult result = execute(OperationRequest.withdraw(account.getAccountNumber(), amount));
+        if (result.isSuccess()) {
+            account.setBalance(result.getBalance());
+            System.out.println("Withdrawal successful. New balance: $" + Money.format(account.getBalance()));
+        } else if (result.getStatus() == OperationResult.Status.REJECTED) {
+            System.out.println(result.getMessage() + " Withdrawal failed.");
+        } else {
+            System.err.println("Error withdrawing money: " + result.getMessage());
         }
-        
-        String updateSql = "UPDATE accounts SET balance = balance - ? WHERE account_number = ?";
-        
+    }
+    
+    public long withdrawFunds(String accountNumber, long amount) throws SQLException, BankingException {
+        long reservation = velocityGuard.reserve(accountNumber, amount);
         try {
-            connection.setAutoCommit(false);
-            
-            try (PreparedStatement pstmt = connection.prepareStatement(updateSql)) {
-                pstmt.setDouble(1, amount);
-                pstmt.setString(2, account.getAccountNumber());
-                pstmt.executeUpdate();
-            }
-            
-            logTransaction(account.getAccountNumber(), "WITHDRAWAL", -amount);
-            
-            connection.commit();
-            account.setBalance(account.getBalance() - amount);
-            System.out.println("Withdrawal successful. New balance: $" + account.getBalance());
-        } catch (SQLException e) {
-            try {
-                connection.rollback();
-            } catch (SQLException ex) {
-                System.err.println("Error rolling back transaction: " + ex.getMessage());
-            }
-            System.err.println("Error withdrawing money: " + e.getMessage());
-        } finally {
-            try {
-                connection.setAutoCommit(true);
-            } catch (SQLException e) {
-                System.err.println("Error resetting auto-commit: " + e.getMessage());
+            if (ledger != null) {
+                return appendLedgerEntries(accountNumber, "WITHDRAWAL", null, null, amount);
             }
+            BalanceSnapshot updated = inTransactionWithRetry((conn, journal) -> {
+                BalanceSnapshot next = adjustBalance(conn, accountNumber, -amount, true);
+                if (next == null) {
+                    // No row matched: loadBalance reports a missing account, otherwise funds were short
+                    loadBalance(conn, accountNumber);
+                    throw new BankingException("Insufficient funds.");
+                }
+                journal.append(accountNumber, "WITHDRAWAL", -amount);
+                return next;
+            });
+            accountCache.put(accountNumber, updated);
+            return updated.getBalance();
+        } catch (SQLException | BankingException | RuntimeException e) {
+            velocityGuard.release(accountNumber, reservation);
+            throw e;
         }
     }
     
     public void transfer(Account fromAccount) {
         System.out.println("\nTransfer Money");
         System.out.println("--------------");
-        System.out.println("Your Account Balance: $" + fromAccount.getBalance());
+        refreshBalance(fromAccount);
+        System.out.println("Your Account Balance: $" + Money.format(fromAccount.getBalance()));
         System.out.print("Enter recipient's account number: ");
         String toAccountNumber = scanner.nextLine();
         System.out.print("Enter amount to transfer: $");
-        double amount = getDoubleInput();
+        long amount = getAmountInput();
         scanner.nextLine(); // Consume newline
         
-        if (amount <= 0) {
-            System.out.println("Invalid amount. Transfer failed.");
-            return;
+        OperationResult result =
+            execute(OperationRequest.transfer(fromAccount.getAccountNumber(), toAccountNumber, amount));
+        if (result.isSuccess()) {
+            fromAccount.setBalance(result.getBalance());
+            System.out.println("Transfer successful.");
+            System.out.println("Your new balance: $" + Money.format(fromAccount.getBalance()));
+        } else if (result.getStatus() == OperationResult.Status.REJECTED) {
+            System.out.println(result.getMessage() + " Transfer failed.");
+        } else {
+            System.err.println("Error transferring money: " + result.getMessage());
         }
-        
-        if (fromAccount.getBalance() < amount) {
-            System.out.println("Insufficient funds. Transfer failed.");
-            return;
+    }
+    
+    // Single entry point for money operations: validation and error mapping live here so the CLI
+    // and the HTTP API run exactly the same checks and code paths
+    public OperationResult execute(OperationRequest request) {
+        try {
+            switch (request.getType()) {
+                case BALANCE:
+                    return OperationResult.ok(currentBalance(request.getAccountNumber()));
+                case DEPOSIT:
+                    if (request.getAmount() <= 0) {
+                        return OperationResult.rejected("Invalid amount.");
+                    }
+                    return OperationResult.ok(depositFunds(request.getAccountNumber(), request.getAmount()));
+                case WITHDRAW:
+                    if (request.getAmount() <= 0) {
+                        return OperationResult.rejected("Invalid amount.");
+                    }
+                    return OperationResult.ok(withdrawFunds(request.getAccountNumber(), request.getAmount()));
+                case TRANSFER:
+                    if (request.getAmount() <= 0) {
+                        return OperationResult.rejected("Invalid amount.");
+                    }
+                    if (request.getToAccountNumber() == null || request.getToAccountNumber().isEmpty()) {
+                        return OperationResult.rejected("Recipient account is required.");
+                    }
+                    return OperationResult.ok(transferFunds(request.getAccountNumber(),
+                                                            request.getToAccountNumber(), request.getAmount()));
+                default:
+                    return OperationResult.rejected("Unsupported operation.");
+            }
+        } catch (BankingException e) {
+            return OperationResult.rejected(e.getMessage());
+        } catch (SQLException e) {
+            return OperationResult.error(e.getMessage());
         }
-        
-        if (fromAccount.getAccountNumber().equals(toAccountNumber)) {
-            System.out.println("Cannot transfer to the same account. Transfer failed.");
-            return;
+    }
+    
+    public long transferFunds(String fromAccountNumber, String toAccountNumber, long amount)
+            throws SQLException, BankingException {
+        if (fromAccountNumber.equals(toAccountNumber)) {
+            throw new BankingException("Cannot transfer to the same account.");
         }
         
-        String checkSql = "SELECT 1 FROM accounts WHERE account_number = ?";
-        String updateFromSql = "UPDATE accounts SET balance = balance - ? WHERE account_number = ?";
-        String updateToSql = "UPDATE accounts SET balance = balance + ? WHERE account_number = ?";
+        // Lock both rows in account-number order so A->B and B->A transfers queue instead of deadlocking.
+        // PostgreSQL applies FOR UPDATE after the sort, so rows are locked in the ORDER BY sequence.
+        String lockSql = "SELECT account_number, balance, version FROM accounts " +
+                         "WHERE account_number IN (?, ?) ORDER BY account_number FOR UPDATE";
+        String updateSql = "UPDATE accounts SET balance = ?, version = version + 1 " +
+                           "WHERE account_number = ? AND version = ?";
         
+        long reservation = velocityGuard.reserve(fromAccountNumber, amount);
         try {
-            connection.setAutoCommit(false);
+            if (ledger != null) {
+                return appendLedgerEntries(fromAccountNumber, "TRANSFER_TO_" + toAccountNumber,
+                                           toAccountNumber, "TRANSFER_FROM_" + fromAccountNumber, amount);
+            }
+            BalanceSnapshot[] updated = inTransactionWithRetry((conn, journal) -> {
+                BalanceSnapshot from = null;
+                BalanceSnapshot to = null;
+                try (PreparedStatement pstmt = conn.prepareStatement(lockSql)) {
+                    pstmt.setString(1, fromAccountNumber);
+                    pstmt.setString(2, toAccountNumber);
+                    ResultSet rs = pstmt.executeQuery();
+                    while (rs.next()) {
+                        BalanceSnapshot locked = new BalanceSnapshot(Money.fromDecimal(rs.getBigDecimal("balance")), rs.getLong("version"));
+                        if (rs.getString("account_number").equals(fromAccountNumber)) {
+                            from = locked;
+                        } else {
+                            to = locked;
+                        }
+                    }
+                }
             
-            // Check if recipient account exists
-            try (PreparedStatement pstmt = connection.prepareStatement(checkSql)) {
-                pstmt.setString(1, toAccountNumber);
-                ResultSet rs = pstmt.executeQuery();
-                if (!rs.next()) {
-                    System.out.println("Recipient account not found. Transfer failed.");
-                    connection.rollback();
-                    return;
+                if (from == null) {
+                    throw new BankingException("Account not found.");
+                }
+                if (to == null) {
+                    throw new BankingException("Recipient account not found.");
+                }
+                if (from.getBalance() < amount) {
+                    throw new BankingException("Insufficient funds.");
                 }
-            }
             
-            // Deduct from sender's account
-            try (PreparedStatement pstmt = connection.prepareStatement(updateFromSql)) {
-                pstmt.setDouble(1, amount);
-                pstmt.setString(2, fromAccount.getAccountNumber());
-                pstmt.executeUpdate();
-            }
+                // Both balance updates go out in one batch
+                try (PreparedStatement pstmt = conn.prepareStatement(updateSql)) {
+                    pstmt.setBigDecimal(1, Money.toDecimal(from.getBalance() - amount));
+                    pstmt.setString(2, fromAccountNumber);
+                    pstmt.setLong(3, from.getVersion());
+                    pstmt.addBatch();
+                
+                    pstmt.setBigDecimal(1, Money.toDecimal(to.getBalance() + amount));
+                    pstmt.setString(2, toAccountNumber);
+                    pstmt.setLong(3, to.getVersion());
+                    pstmt.addBatch();
+                    pstmt.executeBatch();
+                }
             
-            // Add to recipient's account
-            try (PreparedStatement pstmt = connection.prepareStatement(updateToSql)) {
-                pstmt.setDouble(1, amount);
-                pstmt.setString(2, toAccountNumber);
-                pstmt.executeUpdate();
+                journal.append(fromAccountNumber, "TRANSFER_TO_" + toAccountNumber, -amount);
+                journal.append(toAccountNumber, "TRANSFER_FROM_" + fromAccountNumber, amount);
+                return new BalanceSnapshot[] {
+                    new BalanceSnapshot(from.getBalance() - amount, from.getVersion() + 1),
+                    new BalanceSnapshot(to.getBalance() + amount, to.getVersion() + 1)
+                };
+            });
+            accountCache.put(fromAccountNumber, updated[0]);
+            accountCache.put(toAccountNumber, updated[1]);
+            return updated[0].getBalance();
+        } catch (SQLException | BankingException | RuntimeException e) {
+            velocityGuard.release(fromAccountNumber, reservation);
+            throw e;
+        }
+    }
+    
+    public long currentBalance(String accountNumber) throws SQLException, BankingException {
+        if (ledger != null) {
+            return ledger.balance(accountNumber);
+        }
+        BalanceSnapshot cached = accountCache.get(accountNumber);
+        if (cached != null) {
+            return cached.getBalance();
+        }
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            return loadBalance(lease.connection(), accountNumber).getBalance();
+        }
+    }
+    
+    private void refreshBalance(Account account) {
+        try {
+            account.setBalance(currentBalance(account.getAccountNumber()));
+        } catch (SQLException | BankingException e) {
+            System.err.println("Error refreshing balance: " + e.getMessage());
+        }
+    }
+    
+    private BalanceSnapshot loadBalance(Connection conn, String accountNumber) throws SQLException, BankingException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT balance, version FROM accounts WHERE account_number = ?")) {
+            pstmt.setString(1, accountNumber);
+            ResultSet rs = pstmt.executeQuery();
+            if (!rs.next()) {
+                throw new BankingException("Account not found.");
+            }
+            BalanceSnapshot loaded = new BalanceSnapshot(Money.fromDecimal(rs.getBigDecimal("balance")), rs.getLong("version"));
+            accountCache.put(accountNumber, loaded);
+            return loaded;
+        }
+    }
+    
+    // Applies a relative change in a single statement, so concurrent deposits and withdrawals on one
+    // account queue on the row lock instead of conflicting. With requireFunds the change only applies
+    // if the balance covers it. Returns the committed-to-be balance and version, or null if no row matched.
+    private BalanceSnapshot adjustBalance(Connection conn, String accountNumber, long delta, boolean requireFunds)
+            throws SQLException {
+        String sql = "UPDATE accounts SET balance = balance + ?, version = version + 1 " +
+                     "WHERE account_number = ?" + (requireFunds ? " AND balance >= ?" : "") +
+                     " RETURNING balance, version";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setBigDecimal(1, Money.toDecimal(delta));
+            pstmt.setString(2, accountNumber);
+            if (requireFunds) {
+                pstmt.setBigDecimal(3, Money.toDecimal(-delta));
+            }
+            ResultSet rs = pstmt.executeQuery();
+            if (!rs.next()) {
+                return null;
+            }
+            return new BalanceSnapshot(Money.fromDecimal(rs.getBigDecimal("balance")), rs.getLong("version"));
+        }
+    }
+    
+    // Event-sourced write path: a debit and/or credit become pure INSERTs into the ledger, with no
+    // accounts row touched. Overdraft checks run against the in-memory projection under per-account
+    // locks; the exclusive writer lock taken at startup keeps other processes out while the mode is on.
+    private long appendLedgerEntries(String debitAccount, String debitType, String creditAccount,
+                                     String creditType, long amount) throws SQLException, BankingException {
+        return appendLedgerEntries(debitAccount, debitType, creditAccount, creditType, amount, null);
+    }
+    
+    // alongside, if given, runs inside the same database transaction as the ledger rows
+    private long appendLedgerEntries(String debitAccount, String debitType, String creditAccount,
+                                     String creditType, long amount, TransactionWork<?> alongside)
+            throws SQLException, BankingException {
+        LedgerProjection.AccountLocks locks = ledger.lock(debitAccount, creditAccount);
+        ledger.appendGate().readLock().lock();
+        try {
+            for (String account : new String[] {debitAccount, creditAccount}) {
+                if (account != null && !ledger.isKnown(account)) {
+                    try (ConnectionPool.Lease lease = pool.borrow();
+                         PreparedStatement pstmt = lease.connection().prepareStatement(
+                             "SELECT 1 FROM accounts WHERE account_number = ?")) {
+                        pstmt.setString(1, account);
+                        if (!pstmt.executeQuery().next()) {
+                            throw new BankingException(account.equals(creditAccount) && debitAccount != null
+                                ? "Recipient account not found." : "Account not found.");
+                        }
+                    }
+                }
+            }
+            if (debitAccount != null && ledger.balance(debitAccount) < amount) {
+                throw new BankingException("Insufficient funds.");
             }
             
-            // Log transactions
-            logTransaction(fromAccount.getAccountNumber(), "TRANSFER_TO_" + toAccountNumber, -amount);
-            logTransaction(toAccountNumber, "TRANSFER_FROM_" + fromAccount.getAccountNumber(), amount);
+            inTransaction((conn, journal) -> {
+                if (debitAccount != null) {
+                    journal.append(debitAccount, debitType, -amount);
+                }
+                if (creditAccount != null) {
+                    journal.append(creditAccount, creditType, amount);
+                }
+                if (alongside != null) {
+                    alongside.execute(conn, journal);
+                }
+                return null;
+            });
             
-            connection.commit();
-            fromAccount.setBalance(fromAccount.getBalance() - amount);
-            System.out.println("Transfer successful.");
-            System.out.println("Your new balance: $" + fromAccount.getBalance());
-        } catch (SQLException e) {
-            try {
-                connection.rollback();
-            } catch (SQLException ex) {
-                System.err.println("Error rolling back transaction: " + ex.getMessage());
+            if (debitAccount != null) {
+                ledger.apply(debitAccount, -amount);
             }
-            System.err.println("Error transferring money: " + e.getMessage());
+            if (creditAccount != null) {
+                ledger.apply(creditAccount, amount);
+            }
+            return ledger.balance(debitAccount != null ? debitAccount : creditAccount);
         } finally {
+            ledger.appendGate().readLock().unlock();
+            locks.unlock();
+        }
+    }
+    
+    // Rebuilds every balance from the last checkpoint plus one sequential scan of later ledger rows
+    private void replayLedger(LedgerProjection into) throws SQLException {
+        String checkpointSql = "SELECT c.account_number, c.balance, s.last_id FROM ledger_checkpoint_state s " +
+                               "LEFT JOIN ledger_checkpoints c ON TRUE";
+        String replaySql = "SELECT account_number, amount FROM transactions WHERE id > ? ORDER BY id";
+        
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
             try {
-                connection.setAutoCommit(true);
-            } catch (SQLException e) {
-                System.err.println("Error resetting auto-commit: " + e.getMessage());
+                long lastId = 0;
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery(checkpointSql)) {
+                    while (rs.next()) {
+                        lastId = rs.getLong("last_id");
+                        String account = rs.getString("account_number");
+                        if (account != null) {
+                            into.apply(account, Money.fromDecimal(rs.getBigDecimal("balance")));
+                        }
+                    }
+                }
+                
+                try (PreparedStatement pstmt = conn.prepareStatement(replaySql)) {
+                    pstmt.setFetchSize(HISTORY_FETCH_SIZE);
+                    pstmt.setLong(1, lastId);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            into.apply(rs.getString("account_number"), Money.fromDecimal(rs.getBigDecimal("amount")));
+                        }
+                    }
+                }
+            } finally {
+                conn.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
             }
         }
     }
     
-    private void logTransaction(String accountNumber, String type, double amount) throws SQLException {
-        String sql = "INSERT INTO transactions (account_number, transaction_type, amount, timestamp) " +
-                     "VALUES (?, ?, ?, ?)";
+    // Folds ledger rows committed since the previous checkpoint into ledger_checkpoints. Appends are
+    // paused only while the watermark is read, so every id at or below it is already committed.
+    public void checkpointLedger() throws SQLException, BankingException {
+        long watermark;
+        ledger.appendGate().writeLock().lock();
+        try (ConnectionPool.Lease lease = pool.borrow();
+             Statement stmt = lease.connection().createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM transactions")) {
+            rs.next();
+            watermark = rs.getLong(1);
+        } finally {
+            ledger.appendGate().writeLock().unlock();
+        }
+        
+        String foldSql = "INSERT INTO ledger_checkpoints (account_number, balance) " +
+                         "SELECT account_number, SUM(amount) FROM transactions " +
+                         "WHERE id > (SELECT last_id FROM ledger_checkpoint_state WHERE id = 1) AND id <= ? " +
+                         "GROUP BY account_number " +
+                         "ON CONFLICT (account_number) DO UPDATE " +
+                         "SET balance = ledger_checkpoints.balance + EXCLUDED.balance";
+        String advanceSql = "UPDATE ledger_checkpoint_state SET last_id = ? WHERE id = 1 AND last_id < ?";
+        
+        inTransaction((conn, journal) -> {
+            try (PreparedStatement fold = conn.prepareStatement(foldSql);
+                 PreparedStatement advance = conn.prepareStatement(advanceSql)) {
+                fold.setLong(1, watermark);
+                fold.executeUpdate();
+                advance.setLong(1, watermark);
+                advance.setLong(2, watermark);
+                advance.executeUpdate();
+            }
+            return null;
+        });
+    }
+    
+    // Recomputes every account's balance from the ledger in one streaming pass and compares it with
+    // the live balances (the projection in event-sourced mode, accounts.balance otherwise).
+    public int verifyLedger() throws SQLException {
+        Map<String, Long> recomputed = new HashMap<>();
+        int mismatches = 0;
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, accountNumber);
-            pstmt.setString(2, type);
-            pstmt.setDouble(3, amount);
-            pstmt.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
-            pstmt.executeUpdate();
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            try {
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "SELECT account_number, amount FROM transactions")) {
+                    pstmt.setFetchSize(HISTORY_FETCH_SIZE);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            recomputed.merge(rs.getString("account_number"),
+                                Money.fromDecimal(rs.getBigDecimal("amount")), Long::sum);
+                        }
+                    }
+                }
+                
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "SELECT account_number, balance FROM accounts")) {
+                    pstmt.setFetchSize(HISTORY_FETCH_SIZE);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            String account = rs.getString("account_number");
+                            long expected = recomputed.getOrDefault(account, 0L);
+                            long actual = ledger != null ? ledger.balance(account)
+                                                         : Money.fromDecimal(rs.getBigDecimal("balance"));
+                            if (expected != actual) {
+                                mismatches++;
+                                System.out.println("Account " + account + ": ledger $" + Money.format(expected) +
+                                                   ", balance $" + Money.format(actual));
+                            }
+                        }
+                    }
+                }
+            } finally {
+                conn.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            }
         }
+        return mismatches;
     }
     
     public void viewTransactionHistory(Account account) {
         System.out.println("\nTransaction History for Account: " + account.getAccountNumber());
         System.out.println("--------------------------------------------");
         
-        String sql = "SELECT transaction_type, amount, timestamp FROM transactions " +
-                     "WHERE account_number = ? ORDER BY timestamp DESC";
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        HistoryCursor cursor = null;
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, account.getAccountNumber());
-            ResultSet rs = pstmt.executeQuery();
+        try {
+            while (true) {
+                HistoryPage page = fetchTransactionHistory(account.getAccountNumber(), cursor, HISTORY_PAGE_SIZE);
+                
+                if (cursor == null && page.getRecords().isEmpty()) {
+                    System.out.println("No transactions yet.");
+                    return;
+                }
+                
+                for (TransactionRecord record : page.getRecords()) {
+                    System.out.printf("%s | %s | $%s%n", 
+                        record.getTimestamp().toLocalDateTime().format(formatter), 
+                        record.getType(), 
+                        Money.format(record.getAmount()));
+                }
+                
+                cursor = page.getNextCursor();
+                if (cursor == null) {
+                    return;
+                }
+                
+                System.out.print("Enter 'n' for older transactions or press Enter to return: ");
+                if (!scanner.nextLine().trim().equalsIgnoreCase("n")) {
+                    return;
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error retrieving transaction history: " + e.getMessage());
+        }
+    }
+    
+    // Keyset pagination: each page seeks past the (timestamp, id) of the previous page's last row,
+    // so the cost of a page does not depend on how deep into the history it is.
+    public HistoryPage fetchTransactionHistory(String accountNumber, HistoryCursor after, int pageSize)
+            throws SQLException {
+        String sql = "SELECT id, transaction_type, amount, timestamp FROM transactions " +
+                     "WHERE account_number = ?" +
+                     (after != null ? " AND (timestamp, id) < (?, ?)" : "") +
+                     " ORDER BY timestamp DESC, id DESC LIMIT ?";
+        
+        try (ConnectionPool.Lease lease = pool.borrow();
+             PreparedStatement pstmt = lease.connection().prepareStatement(sql)) {
+            int paramIndex = 1;
+            pstmt.setString(paramIndex++, accountNumber);
+            if (after != null) {
+                pstmt.setTimestamp(paramIndex++, after.getTimestamp());
+                pstmt.setLong(paramIndex++, after.getId());
+            }
+            // One extra row tells us whether another page exists
+            pstmt.setInt(paramIndex, pageSize + 1);
             
-            if (!rs.isBeforeFirst()) {
-                System.out.println("No transactions yet.");
-                return;
+            List<TransactionRecord> records = new ArrayList<>(pageSize);
+            boolean hasMore = false;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (records.size() == pageSize) {
+                        hasMore = true;
+                        break;
+                    }
+                    records.add(readTransactionRecord(rs));
+                }
+            }
+            
+            HistoryCursor next = null;
+            if (hasMore) {
+                TransactionRecord last = records.get(records.size() - 1);
+                next = new HistoryCursor(last.getTimestamp(), last.getId());
+            }
+            return new HistoryPage(records, next);
+        }
+    }
+    
+    // Streams the full history oldest-first with a bounded fetch size, so memory use stays
+    // constant however long the history is. PostgreSQL only honours the fetch size with
+    // autocommit off; the pool restores autocommit when the lease is returned.
+    public void streamTransactionHistory(String accountNumber, Consumer<TransactionRecord> sink)
+            throws SQLException {
+        String sql = "SELECT id, transaction_type, amount, timestamp FROM transactions " +
+                     "WHERE account_number = ? ORDER BY timestamp, id";
+        
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setFetchSize(HISTORY_FETCH_SIZE);
+                pstmt.setString(1, accountNumber);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        sink.accept(readTransactionRecord(rs));
+                    }
+                }
+            }
+        }
+    }
+    
+    private static TransactionRecord readTransactionRecord(ResultSet rs) throws SQLException {
+        return new TransactionRecord(
+            rs.getLong("id"),
+            rs.getString("transaction_type"),
+            Money.fromDecimal(rs.getBigDecimal("amount")),
+            rs.getTimestamp("timestamp"));
+    }
+    
+    // Folds each completed day's ledger rows into account_daily_balances, starting after the day in
+    // daily_balance_watermark. Each day and its watermark advance commit together, quiet days included,
+    // and the upsert makes re-runs harmless. Before the first watermark exists, the latest snapshot
+    // (or else the first ledger row) decides where to start; COALESCE skips those scans afterwards.
+    public int snapshotDailyBalances(LocalDate throughDay) throws SQLException {
+        String nextDaySql = "SELECT COALESCE(" +
+                            "(SELECT processed_through FROM daily_balance_watermark WHERE id = 1) + 1, " +
+                            "(SELECT MAX(balance_date) FROM account_daily_balances) + 1, " +
+                            "(SELECT CAST(MIN(timestamp) AS DATE) FROM transactions)) AS next_day";
+        String snapshotSql = "INSERT INTO account_daily_balances (account_number, balance_date, closing_balance) " +
+                             "SELECT d.account_number, ?, COALESCE((" +
+                             "    SELECT b.closing_balance FROM account_daily_balances b " +
+                             "    WHERE b.account_number = d.account_number AND b.balance_date < ? " +
+                             "    ORDER BY b.balance_date DESC LIMIT 1), 0) + d.day_total " +
+                             "FROM (SELECT account_number, SUM(amount) AS day_total FROM transactions " +
+                             "      WHERE timestamp >= ? AND timestamp < ? GROUP BY account_number) d " +
+                             "ON CONFLICT (account_number, balance_date) " +
+                             "DO UPDATE SET closing_balance = EXCLUDED.closing_balance";
+        String advanceSql = "INSERT INTO daily_balance_watermark (id, processed_through) VALUES (1, ?) " +
+                            "ON CONFLICT (id) DO UPDATE SET processed_through = " +
+                            "GREATEST(daily_balance_watermark.processed_through, EXCLUDED.processed_through)";
+        
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            Connection conn = lease.connection();
+            
+            LocalDate day;
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(nextDaySql)) {
+                rs.next();
+                Date nextDay = rs.getDate("next_day");
+                if (nextDay == null) {
+                    return 0;
+                }
+                day = nextDay.toLocalDate();
             }
             
+            int processed = 0;
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(snapshotSql);
+                 PreparedStatement advance = conn.prepareStatement(advanceSql)) {
+                for (; !day.isAfter(throughDay); day = day.plusDays(1)) {
+                    pstmt.setDate(1, Date.valueOf(day));
+                    pstmt.setDate(2, Date.valueOf(day));
+                    pstmt.setTimestamp(3, Timestamp.valueOf(day.atStartOfDay()));
+                    pstmt.setTimestamp(4, Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+                    pstmt.executeUpdate();
+                    advance.setDate(1, Date.valueOf(day));
+                    advance.executeUpdate();
+                    conn.commit();
+                    processed++;
+                }
+            }
+            return processed;
+        }
+    }
+    
+    public void viewMonthlyStatement(Account account) {
+        System.out.print("Enter statement month (YYYY-MM) or press Enter for the current month: ");
+        String input = scanner.nextLine().trim();
+        
+        YearMonth month;
+        try {
+            month = input.isEmpty() ? YearMonth.now() : YearMonth.parse(input);
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid month. Please use the format YYYY-MM.");
+            return;
+        }
+        
+        try {
+            AccountStatement statement = generateStatement(account.getAccountNumber(), month.atDay(1), month.atEndOfMonth());
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
             
+            System.out.println("\nStatement for Account: " + account.getAccountNumber() + " (" + month + ")");
+            System.out.println("--------------------------------------------");
+            System.out.println("Opening Balance: $" + Money.format(statement.getOpeningBalance()));
+            for (TransactionRecord record : statement.getLines()) {
+                System.out.printf("%s | %s | $%s%n", 
+                    record.getTimestamp().toLocalDateTime().format(formatter), 
+                    record.getType(), 
+                    Money.format(record.getAmount()));
+            }
+            System.out.println("Closing Balance: $" + Money.format(statement.getClosingBalance()));
+        } catch (SQLException e) {
+            System.err.println("Error generating statement: " + e.getMessage());
+        }
+    }
+    
+    // Opening balance = nearest snapshot before the period + the few ledger rows between that snapshot
+    // and the period start; the period's own rows are then read once for both the lines and the closing.
+    public AccountStatement generateStatement(String accountNumber, LocalDate from, LocalDate to) throws SQLException {
+        String snapshotSql = "SELECT balance_date, closing_balance FROM account_daily_balances " +
+                             "WHERE account_number = ? AND balance_date < ? " +
+                             "ORDER BY balance_date DESC LIMIT 1";
+        String deltaSql = "SELECT COALESCE(SUM(amount), 0) AS delta FROM transactions " +
+                          "WHERE account_number = ? AND timestamp >= ? AND timestamp < ?";
+        String linesSql = "SELECT id, transaction_type, amount, timestamp FROM transactions " +
+                          "WHERE account_number = ? AND timestamp >= ? AND timestamp < ? " +
+                          "ORDER BY timestamp, id";
+        
+        Timestamp periodStart = Timestamp.valueOf(from.atStartOfDay());
+        Timestamp periodEnd = Timestamp.valueOf(to.plusDays(1).atStartOfDay());
+        
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            Connection conn = lease.connection();
+            // One consistent read view for all three queries, and lets the fetch size take effect
+            conn.setAutoCommit(false);
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            try {
+                long opening = 0;
+                Timestamp deltaStart = new Timestamp(0);
+                try (PreparedStatement pstmt = conn.prepareStatement(snapshotSql)) {
+                    pstmt.setString(1, accountNumber);
+                    pstmt.setDate(2, Date.valueOf(from));
+                    ResultSet rs = pstmt.executeQuery();
+                    if (rs.next()) {
+                        opening = Money.fromDecimal(rs.getBigDecimal("closing_balance"));
+                        deltaStart = Timestamp.valueOf(rs.getDate("balance_date").toLocalDate().plusDays(1).atStartOfDay());
+                    }
+                }
+                
+                try (PreparedStatement pstmt = conn.prepareStatement(deltaSql)) {
+                    pstmt.setString(1, accountNumber);
+                    pstmt.setTimestamp(2, deltaStart);
+                    pstmt.setTimestamp(3, periodStart);
+                    ResultSet rs = pstmt.executeQuery();
+                    rs.next();
+                    opening += Money.fromDecimal(rs.getBigDecimal("delta"));
+                }
+                
+                List<TransactionRecord> lines = new ArrayList<>();
+                long closing = opening;
+                try (PreparedStatement pstmt = conn.prepareStatement(linesSql)) {
+                    pstmt.setFetchSize(HISTORY_FETCH_SIZE);
+                    pstmt.setString(1, accountNumber);
+                    pstmt.setTimestamp(2, periodStart);
+                    pstmt.setTimestamp(3, periodEnd);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            TransactionRecord record = readTransactionRecord(rs);
+                            closing += record.getAmount();
+                            lines.add(record);
+                        }
+                    }
+                }
+                return new AccountStatement(accountNumber, from, to, opening, closing, lines);
+            } finally {
+                conn.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            }
+        }
+    }
+    
+    private void manageStandingOrders(Account account) {
+        System.out.println("\nStanding Orders");
+        System.out.println("---------------");
+        
+        String listSql = "SELECT order_id, to_account, amount, interval_days, next_run FROM standing_orders " +
+                         "WHERE from_account = ? AND active ORDER BY next_run";
+        try (ConnectionPool.Lease lease = pool.borrow();
+             PreparedStatement pstmt = lease.connection().prepareStatement(listSql)) {
+            pstmt.setString(1, account.getAccountNumber());
+            ResultSet rs = pstmt.executeQuery();
+            if (!rs.isBeforeFirst()) {
+                System.out.println("No standing orders.");
+            }
             while (rs.next()) {
-                String type = rs.getString("transaction_type");
-                double amount = rs.getDouble("amount");
-                Timestamp timestamp = rs.getTimestamp("timestamp");
+                System.out.printf("#%d | to %s | $%s every %d day(s) | next %s%n",
+                    rs.getInt("order_id"), rs.getString("to_account"),
+                    Money.format(Money.fromDecimal(rs.getBigDecimal("amount"))),
+                    rs.getInt("interval_days"), rs.getTimestamp("next_run").toLocalDateTime().toLocalDate());
+            }
+        } catch (SQLException e) {
+            System.err.println("Error retrieving standing orders: " + e.getMessage());
+            return;
+        }
+        
+        System.out.println("\n1. Create Standing Order");
+        System.out.println("2. Cancel Standing Order");
+        System.out.println("3. Back");
+        System.out.print("Enter your choice: ");
+        int choice = getIntInput();
+        scanner.nextLine(); // Consume newline
+        
+        try {
+            if (choice == 1) {
+                System.out.print("Enter recipient's account number: ");
+                String toAccountNumber = scanner.nextLine();
+                System.out.print("Enter amount: $");
+                long amount = getAmountInput();
+                System.out.print("Repeat every how many days: ");
+                int intervalDays = getIntInput();
+                System.out.print("First payment date (YYYY-MM-DD): ");
+                scanner.nextLine(); // Consume newline
+                LocalDate firstRun = LocalDate.parse(scanner.nextLine().trim());
                 
-                System.out.printf("%s | %s | $%.2f%n", 
-                    timestamp.toLocalDateTime().format(formatter), 
-                    type, 
-                    amount);
+                if (amount <= 0 || intervalDays <= 0 || account.getAccountNumber().equals(toAccountNumber)) {
+                    System.out.println("Invalid standing order.");
+                    return;
+                }
+                createStandingOrder(account.getAccountNumber(), toAccountNumber, amount, intervalDays,
+                                    firstRun.atStartOfDay());
+                System.out.println("Standing order created.");
+            } else if (choice == 2) {
+                System.out.print("Enter standing order number to cancel: ");
+                int orderId = getIntInput();
+                scanner.nextLine(); // Consume newline
+                System.out.println(cancelStandingOrder(account.getAccountNumber(), orderId)
+                    ? "Standing order cancelled." : "Standing order not found.");
             }
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid date. Please use the format YYYY-MM-DD.");
         } catch (SQLException e) {
-            System.err.println("Error retrieving transaction history: " + e.getMessage());
+            System.err.println("Error updating standing orders: " + e.getMessage());
+        }
+    }
+    
+    public void createStandingOrder(String fromAccount, String toAccount, long amount, int intervalDays,
+                                    LocalDateTime firstRun) throws SQLException {
+        String sql = "INSERT INTO standing_orders (from_account, to_account, amount, interval_days, next_run) " +
+                     "VALUES (?, ?, ?, ?, ?) RETURNING order_id";
+        try (ConnectionPool.Lease lease = pool.borrow();
+             PreparedStatement pstmt = lease.connection().prepareStatement(sql)) {
+            pstmt.setString(1, fromAccount);
+            pstmt.setString(2, toAccount);
+            pstmt.setBigDecimal(3, Money.toDecimal(amount));
+            pstmt.setInt(4, intervalDays);
+            pstmt.setTimestamp(5, Timestamp.valueOf(firstRun));
+            ResultSet rs = pstmt.executeQuery();
+            rs.next();
+            synchronized (dueOrders) {
+                dueOrders.add(new StandingOrder(rs.getInt("order_id"), fromAccount, toAccount, amount,
+                                                intervalDays, firstRun));
+            }
+        }
+    }
+    
+    public boolean cancelStandingOrder(String fromAccount, int orderId) throws SQLException {
+        String sql = "UPDATE standing_orders SET active = FALSE WHERE order_id = ? AND from_account = ? AND active";
+        try (ConnectionPool.Lease lease = pool.borrow();
+             PreparedStatement pstmt = lease.connection().prepareStatement(sql)) {
+            pstmt.setInt(1, orderId);
+            pstmt.setString(2, fromAccount);
+            if (pstmt.executeUpdate() == 0) {
+                return false;
+            }
+        }
+        synchronized (dueOrders) {
+            dueOrders.removeIf(order -> order.getOrderId() == orderId);
+        }
+        return true;
+    }
+    
+    private void loadStandingOrders() throws SQLException {
+        String sql = "SELECT order_id, from_account, to_account, amount, interval_days, next_run " +
+                     "FROM standing_orders WHERE active";
+        List<StandingOrder> loaded = new ArrayList<>();
+        try (ConnectionPool.Lease lease = pool.borrow();
+             PreparedStatement pstmt = lease.connection().prepareStatement(sql)) {
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                loaded.add(new StandingOrder(rs.getInt("order_id"), rs.getString("from_account"),
+                    rs.getString("to_account"), Money.fromDecimal(rs.getBigDecimal("amount")),
+                    rs.getInt("interval_days"), rs.getTimestamp("next_run").toLocalDateTime()));
+            }
+        }
+        synchronized (dueOrders) {
+            dueOrders.clear();
+            dueOrders.addAll(loaded);
+        }
+    }
+    
+    // Drains every order that is due, groups them by source account and settles each group in a
+    // single database transaction. An order more than one interval behind comes back due after it
+    // is advanced, so missed occurrences are paid one by one on later passes of the loop.
+    private void runDueStandingOrders() {
+        while (true) {
+            LocalDateTime now = LocalDateTime.now();
+            Map<String, List<StandingOrder>> bySource = new LinkedHashMap<>();
+            synchronized (dueOrders) {
+                while (!dueOrders.isEmpty() && !dueOrders.peek().getNextRun().isAfter(now)) {
+                    StandingOrder order = dueOrders.poll();
+                    bySource.computeIfAbsent(order.getFromAccount(), k -> new ArrayList<>()).add(order);
+                }
+            }
+            if (bySource.isEmpty()) {
+                return;
+            }
+            
+            boolean failed = false;
+            for (Map.Entry<String, List<StandingOrder>> group : bySource.entrySet()) {
+                try {
+                    executeStandingOrders(group.getKey(), group.getValue());
+                    synchronized (dueOrders) {
+                        for (StandingOrder order : group.getValue()) {
+                            dueOrders.add(order.advanced());
+                        }
+                    }
+                } catch (BankingException e) {
+                    // Another process already settled these occurrences; take its view of the schedule
+                    try {
+                        loadStandingOrders();
+                    } catch (SQLException ex) {
+                        System.err.println("Error reloading standing orders: " + ex.getMessage());
+                    }
+                    return;
+                } catch (SQLException e) {
+                    // Requeue this group and carry on with the others; it is retried on the next tick
+                    System.err.println("Error executing standing orders for " + group.getKey() + ": " + e.getMessage());
+                    synchronized (dueOrders) {
+                        dueOrders.addAll(group.getValue());
+                    }
+                    failed = true;
+                }
+            }
+            if (failed) {
+                return;
+            }
+        }
+    }
+    
+    private void executeStandingOrders(String fromAccount, List<StandingOrder> orders)
+            throws SQLException, BankingException {
+        if (ledger != null) {
+            // Each order's ledger rows and its schedule advance commit together, so a retry after a
+            // partial failure finds the paid orders already advanced instead of paying them again
+            for (StandingOrder order : orders) {
+                TransactionWork<Void> advance = (conn, journal) -> {
+                    advanceStandingOrders(conn, List.of(order));
+                    return null;
+                };
+                boolean reserved = false;
+                long reservation = 0;
+                try {
+                    reservation = velocityGuard.reserve(fromAccount, order.getAmount());
+                    reserved = true;
+                    appendLedgerEntries(fromAccount, "TRANSFER_TO_" + order.getToAccount(), order.getToAccount(),
+                                        "TRANSFER_FROM_" + fromAccount, order.getAmount(), advance);
+                } catch (BankingException e) {
+                    // Over the velocity limit, refused before anything was written, or already settled
+                    // elsewhere; advancing on its own skips the first two and rethrows for the last
+                    if (reserved) {
+                        velocityGuard.release(fromAccount, reservation);
+                    }
+                    inTransaction(advance);
+                    System.err.println("Standing order #" + order.getOrderId() + " skipped: " + e.getMessage());
+                } catch (SQLException | RuntimeException e) {
+                    if (reserved) {
+                        velocityGuard.release(fromAccount, reservation);
+                    }
+                    throw e;
+                }
+            }
+            return;
+        }
+        
+        // Orders count against the same velocity limits as interactive transfers. One over the limit
+        // is skipped like an unfunded one: its occurrence is advanced without paying
+        List<StandingOrder> payable = new ArrayList<>();
+        Map<Integer, Long> reservations = new HashMap<>();
+        for (StandingOrder order : orders) {
+            try {
+                reservations.put(order.getOrderId(), velocityGuard.reserve(fromAccount, order.getAmount()));
+                payable.add(order);
+            } catch (BankingException e) {
+                System.err.println("Standing order #" + order.getOrderId() + " skipped: " + e.getMessage());
+            }
+        }
+        
+        TreeSet<String> accounts = new TreeSet<>();
+        accounts.add(fromAccount);
+        for (StandingOrder order : orders) {
+            accounts.add(order.getToAccount());
+        }
+        
+        // Same canonical lock order as transferFunds, so grouped runs and interactive transfers never deadlock
+        String lockSql = "SELECT account_number, balance, version FROM accounts " +
+                         "WHERE account_number = ANY(?) ORDER BY account_number FOR UPDATE";
+        String updateSql = "UPDATE accounts SET balance = ?, version = version + 1 " +
+                           "WHERE account_number = ? AND version = ?";
+        
+        // Unfunded orders of the committed attempt, whose reservations are handed back afterwards
+        List<StandingOrder> unfunded = new ArrayList<>();
+        Map<String, BalanceSnapshot> updated;
+        try {
+            updated = inTransactionWithRetry((conn, journal) -> {
+                unfunded.clear();
+                Map<String, BalanceSnapshot> locked = new LinkedHashMap<>();
+                try (PreparedStatement pstmt = conn.prepareStatement(lockSql)) {
+                    pstmt.setArray(1, conn.createArrayOf("varchar", accounts.toArray()));
+                    ResultSet rs = pstmt.executeQuery();
+                    while (rs.next()) {
+                        locked.put(rs.getString("account_number"),
+                            new BalanceSnapshot(Money.fromDecimal(rs.getBigDecimal("balance")), rs.getLong("version")));
+                    }
+                }
+                if (!locked.containsKey(fromAccount)) {
+                    throw new SQLException("Standing order source account " + fromAccount + " not found");
+                }
+            
+                Map<String, Long> balances = new LinkedHashMap<>();
+                for (Map.Entry<String, BalanceSnapshot> entry : locked.entrySet()) {
+                    balances.put(entry.getKey(), entry.getValue().getBalance());
+                }
+                for (StandingOrder order : payable) {
+                    long available = balances.get(fromAccount);
+                    if (available < order.getAmount()) {
+                        unfunded.add(order);
+                        continue;
+                    }
+                    balances.put(fromAccount, available - order.getAmount());
+                    balances.merge(order.getToAccount(), order.getAmount(), Long::sum);
+                    journal.append(fromAccount, "TRANSFER_TO_" + order.getToAccount(), -order.getAmount());
+                    journal.append(order.getToAccount(), "TRANSFER_FROM_" + fromAccount, order.getAmount());
+                }
+            
+                Map<String, BalanceSnapshot> next = new LinkedHashMap<>();
+                try (PreparedStatement pstmt = conn.prepareStatement(updateSql)) {
+                    for (Map.Entry<String, BalanceSnapshot> entry : locked.entrySet()) {
+                        long newBalance = balances.get(entry.getKey());
+                        if (newBalance == entry.getValue().getBalance()) {
+                            continue;
+                        }
+                        pstmt.setBigDecimal(1, Money.toDecimal(newBalance));
+                        pstmt.setString(2, entry.getKey());
+                        pstmt.setLong(3, entry.getValue().getVersion());
+                        pstmt.addBatch();
+                        next.put(entry.getKey(), new BalanceSnapshot(newBalance, entry.getValue().getVersion() + 1));
+                    }
+                    pstmt.executeBatch();
+                }
+            
+                advanceStandingOrders(conn, orders);
+                return next;
+            });
+        } catch (SQLException | BankingException | RuntimeException e) {
+            for (long reservation : reservations.values()) {
+                velocityGuard.release(fromAccount, reservation);
+            }
+            throw e;
+        }
+        
+        for (StandingOrder order : unfunded) {
+            velocityGuard.release(fromAccount, reservations.get(order.getOrderId()));
+            System.err.println("Standing order #" + order.getOrderId() + " skipped: insufficient funds.");
+        }
+        for (Map.Entry<String, BalanceSnapshot> entry : updated.entrySet()) {
+            accountCache.put(entry.getKey(), entry.getValue());
+        }
+    }
+    
+    // Moves each order to its next occurrence only if it is still at the occurrence we just settled,
+    // so two schedulers can never pay the same occurrence twice
+    private void advanceStandingOrders(Connection conn, List<StandingOrder> orders)
+            throws SQLException, BankingException {
+        String sql = "UPDATE standing_orders SET next_run = ? WHERE order_id = ? AND next_run = ? AND active";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (StandingOrder order : orders) {
+                pstmt.setTimestamp(1, Timestamp.valueOf(order.advanced().getNextRun()));
+                pstmt.setInt(2, order.getOrderId());
+                pstmt.setTimestamp(3, Timestamp.valueOf(order.getNextRun()));
+                pstmt.addBatch();
+            }
+            for (int count : pstmt.executeBatch()) {
+                if (count == 0) {
+                    throw new BankingException("Standing order already settled or cancelled.");
+                }
+            }
         }
     }
     
@@ -492,7 +1999,12 @@ public class OnlineBankingSystem {
         System.out.print("Enter current PIN: ");
         String currentPin = scanner.nextLine();
         
-        if (!currentPin.equals(account.getPin())) {
+        if (loginThrottle.isLocked(account.getAccountNumber())) {
+            System.out.println("Too many failed attempts. Please try again later.");
+            return;
+        }
+        if (!PinHasher.matches(currentPin, account.getPinSalt(), account.getPinHash())) {
+            loginThrottle.recordFailure(account.getAccountNumber());
             System.out.println("Incorrect PIN. Operation cancelled.");
             return;
         }
@@ -506,40 +2018,1614 @@ public class OnlineBankingSystem {
             }
         } while (!isValidPin(newPin));
         
-        String sql = "UPDATE accounts SET pin = ? WHERE account_number = ?";
+        String pinSalt = PinHasher.newSalt();
+        String pinHash = PinHasher.hash(newPin, pinSalt);
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, newPin);
-            pstmt.setString(2, account.getAccountNumber());
-            pstmt.executeUpdate();
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            storePinHash(lease.connection(), account.getAccountNumber(), pinHash, pinSalt);
             
-            account.setPin(newPin);
+            account.setPinHash(pinHash, pinSalt);
             System.out.println("PIN changed successfully.");
         } catch (SQLException e) {
             System.err.println("Error changing PIN: " + e.getMessage());
         }
     }
     
-    static class Account {
-        private String accountNumber;
-        private String firstName;
-        private String lastName;
-        private String pin;
-        private double balance;
+    @FunctionalInterface
+    interface TransactionWork<T> {
+        T execute(Connection conn, TransactionJournal journal) throws SQLException, BankingException;
+    }
+    
+    // Collects the ledger rows of one database transaction and writes them as a single JDBC batch
+    // just before commit, reusing one prepared INSERT for every row. Unbatched, each row is written
+    // as soon as it is appended.
+    static class TransactionJournal implements AutoCloseable {
+        private static final String INSERT_SQL =
+            "INSERT INTO transactions (account_number, transaction_type, amount, timestamp) VALUES (?, ?, ?, ?)";
         
-        public Account(String accountNumber, String firstName, String lastName, String pin, double balance) {
-            this.accountNumber = accountNumber;
-            this.firstName = firstName;
-            this.lastName = lastName;
-            this.pin = pin;
-            this.balance = balance;
+        private final Connection conn;
+        private final boolean batched;
+        private final Timestamp timestamp = Timestamp.valueOf(LocalDateTime.now());
+        private PreparedStatement insert;
+        private int pending;
+        
+        TransactionJournal(Connection conn, boolean batched) {
+            this.conn = conn;
+            this.batched = batched;
         }
         
-        public String getAccountNumber() {
-            return accountNumber;
+        public void append(String accountNumber, String type, long amount) throws SQLException {
+            if (insert == null) {
+                insert = conn.prepareStatement(INSERT_SQL);
+            }
+            insert.setString(1, accountNumber);
+            insert.setString(2, type);
+            insert.setBigDecimal(3, Money.toDecimal(amount));
+            insert.setTimestamp(4, timestamp);
+            if (!batched) {
+                insert.executeUpdate();
+                return;
+            }
+            insert.addBatch();
+            pending++;
         }
         
-        public String getFirstName() {
+        public void flush() throws SQLException {
+            if (pending > 0) {
+                insert.executeBatch();
+                pending = 0;
+            }
+        }
+        
+        @Override
+        public void close() throws SQLException {
+            if (insert != null) {
+                insert.close();
+            }
+        }
+    }
+    
+    static class BankingException extends Exception {
+        private static final long serialVersionUID = 1L;
+        
+        public BankingException(String message) {
+            super(message);
+        }
+    }
+    
+    static class ConnectionPool implements AutoCloseable {
+        private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+        private static final long VALIDATE_AFTER_IDLE_MS = 1000;
+        
+        private final String url;
+        private final String user;
+        private final String password;
+        private final long borrowTimeoutMillis;
+        private final Semaphore permits;
+        private final BlockingQueue<PooledConnection> idle;
+        private volatile boolean closed;
+        
+        public ConnectionPool(String url, String user, String password, int maxSize, long borrowTimeoutMillis)
+                throws SQLException {
+            this.url = url;
+            this.user = user;
+            this.password = password;
+            this.borrowTimeoutMillis = borrowTimeoutMillis;
+            this.permits = new Semaphore(maxSize, true);
+            this.idle = new ArrayBlockingQueue<>(maxSize);
+            
+            // Fail fast on bad credentials instead of on the first borrow
+            idle.offer(new PooledConnection(DriverManager.getConnection(url, user, password)));
+        }
+        
+        public Lease borrow() throws SQLException {
+            if (closed) {
+                throw new SQLException("Connection pool is closed");
+            }
+            try {
+                if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    throw new SQLException("Timed out waiting for a database connection");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted waiting for a database connection", e);
+            }
+            
+            try {
+                PooledConnection pooled;
+                while ((pooled = idle.poll()) != null) {
+                    if (isHealthy(pooled)) {
+                        return new Lease(pooled);
+                    }
+                    closeQuietly(pooled.connection);
+                }
+                return new Lease(new PooledConnection(DriverManager.getConnection(url, user, password)));
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+        
+        private boolean isHealthy(PooledConnection pooled) {
+            try {
+                if (pooled.connection.isClosed()) {
+                    return false;
+                }
+                if (System.currentTimeMillis() - pooled.lastReleased < VALIDATE_AFTER_IDLE_MS) {
+                    return true;
+                }
+                return pooled.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+        
+        private void release(PooledConnection pooled) {
+            try {
+                // Never hand the next caller an open transaction or manual-commit mode
+                if (!pooled.connection.isClosed() && !pooled.connection.getAutoCommit()) {
+                    pooled.connection.rollback();
+                    pooled.connection.setAutoCommit(true);
+                }
+                pooled.lastReleased = System.currentTimeMillis();
+                if (closed || pooled.connection.isClosed() || !idle.offer(pooled)) {
+                    closeQuietly(pooled.connection);
+                }
+            } catch (SQLException e) {
+                closeQuietly(pooled.connection);
+            } finally {
+                permits.release();
+            }
+        }
+        
+        private static void closeQuietly(Connection connection) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing connection: " + e.getMessage());
+            }
+        }
+        
+        @Override
+        public void close() {
+            closed = true;
+            PooledConnection pooled;
+            while ((pooled = idle.poll()) != null) {
+                closeQuietly(pooled.connection);
+            }
+        }
+        
+        private static class PooledConnection {
+            private final Connection connection;
+            private long lastReleased = System.currentTimeMillis();
+            
+            PooledConnection(Connection connection) {
+                this.connection = connection;
+            }
+        }
+        
+        class Lease implements AutoCloseable {
+            private final PooledConnection pooled;
+            private boolean released;
+            
+            private Lease(PooledConnection pooled) {
+                this.pooled = pooled;
+            }
+            
+            public Connection connection() {
+                return pooled.connection;
+            }
+            
+            @Override
+            public void close() {
+                if (!released) {
+                    released = true;
+                    release(pooled);
+                }
+            }
+        }
+    }
+    
+    // Money is carried as a primitive long count of cents everywhere inside the system.
+    // BigDecimal only appears at the JDBC boundary (DECIMAL(10, 2) columns) and at input parsing.
+    static final class Money {
+        private static final int SCALE = 2;
+        
+        private Money() {
+        }
+        
+        public static long parse(String text) {
+            try {
+                BigDecimal value = new BigDecimal(text.trim());
+                if (value.scale() > SCALE) {
+                    throw new NumberFormatException("At most " + SCALE + " decimal places allowed: " + text);
+                }
+                return value.movePointRight(SCALE).longValueExact();
+            } catch (ArithmeticException e) {
+                throw new NumberFormatException("Amount out of range: " + text);
+            }
+        }
+        
+        public static long fromDecimal(BigDecimal value) {
+            return value.movePointRight(SCALE).longValueExact();
+        }
+        
+        public static BigDecimal toDecimal(long cents) {
+            return BigDecimal.valueOf(cents, SCALE);
+        }
+        
+        // Splits with / and % rather than Math.abs, which overflows for Long.MIN_VALUE
+        public static String format(long cents) {
+            long whole = cents / 100;
+            long fraction = Math.abs(cents % 100);
+            return (cents < 0 && whole == 0 ? "-" : "") + whole + (fraction < 10 ? ".0" : ".") + fraction;
+        }
+    }
+    
+    // Hands out account numbers from blocks reserved with a single nextval each, so numbering
+    // needs no existence probes and concurrent processes never receive the same number.
+    static class AccountNumberAllocator {
+        private final int blockSize;
+        private long next;
+        private long limit;
+        
+        public AccountNumberAllocator(int blockSize) {
+            this.blockSize = blockSize;
+        }
+        
+        public synchronized String next(Connection conn) throws SQLException {
+            if (next == limit) {
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT nextval('account_number_blocks')")) {
+                    rs.next();
+                    next = rs.getLong(1);
+                    limit = next + blockSize;
+                }
+            }
+            return String.format("%010d", next++);
+        }
+    }
+    
+    static class ImportResult {
+        private final int imported;
+        private final int rejected;
+        
+        public ImportResult(int imported, int rejected) {
+            this.imported = imported;
+            this.rejected = rejected;
+        }
+        
+        public int getImported() {
+            return imported;
+        }
+        
+        public int getRejected() {
+            return rejected;
+        }
+    }
+    
+    static class OperationRequest {
+        enum Type { BALANCE, DEPOSIT, WITHDRAW, TRANSFER }
+        
+        private final Type type;
+        private final String accountNumber;
+        private final String toAccountNumber;
+        private final long amount;
+        
+        public OperationRequest(Type type, String accountNumber, String toAccountNumber, long amount) {
+            this.type = type;
+            this.accountNumber = accountNumber;
+            this.toAccountNumber = toAccountNumber;
+            this.amount = amount;
+        }
+        
+        public static OperationRequest balance(String accountNumber) {
+            return new OperationRequest(Type.BALANCE, accountNumber, null, 0);
+        }
+        
+        public static OperationRequest deposit(String accountNumber, long amount) {
+            return new OperationRequest(Type.DEPOSIT, accountNumber, null, amount);
+        }
+        
+        public static OperationRequest withdraw(String accountNumber, long amount) {
+            return new OperationRequest(Type.WITHDRAW, accountNumber, null, amount);
+        }
+        
+        public static OperationRequest transfer(String fromAccountNumber, String toAccountNumber, long amount) {
+            return new OperationRequest(Type.TRANSFER, fromAccountNumber, toAccountNumber, amount);
+        }
+        
+        public Type getType() {
+            return type;
+        }
+        
+        public String getAccountNumber() {
+            return accountNumber;
+        }
+        
+        public String getToAccountNumber() {
+            return toAccountNumber;
+        }
+        
+        public long getAmount() {
+            return amount;
+        }
+    }
+    
+    static class OperationResult {
+        // REJECTED is a business refusal (bad amount, insufficient funds); ERROR is an infrastructure failure
+        enum Status { OK, REJECTED, ERROR }
+        
+        private final Status status;
+        private final long balance;
+        private final String message;
+        
+        private OperationResult(Status status, long balance, String message) {
+            this.status = status;
+            this.balance = balance;
+            this.message = message;
+        }
+        
+        public static OperationResult ok(long balance) {
+            return new OperationResult(Status.OK, balance, null);
+        }
+        
+        public static OperationResult rejected(String message) {
+            return new OperationResult(Status.REJECTED, 0, message);
+        }
+        
+        public static OperationResult error(String message) {
+            return new OperationResult(Status.ERROR, 0, message);
+        }
+        
+        public boolean isSuccess() {
+            return status == Status.OK;
+        }
+        
+        public Status getStatus() {
+            return status;
+        }
+        
+        public long getBalance() {
+            return balance;
+        }
+        
+        public String getMessage() {
+            return message;
+        }
+    }
+    
+    // Minimal JSON-over-HTTP front end for OperationRequest. The account number travels as a parameter
+    // (query string for GET, form body for POST); the PIN only in the X-PIN header or a POST body, never
+    // in a URL, e.g. POST /transfer with account=...&pin=...&to=...&amount=12.50
+    static class HttpApi {
+        static final String PIN_HEADER = "X-PIN";
+        
+        private final OnlineBankingSystem bank;
+        private final HttpServer server;
+        
+        HttpApi(OnlineBankingSystem bank, InetSocketAddress address) throws IOException {
+            this.bank = bank;
+            this.server = HttpServer.create(address, 0);
+            // Handlers block on JDBC, so they share the bank's session executor (virtual threads where available)
+            server.setExecutor(bank.sessionExecutor);
+            server.createContext("/balance", exchange -> handle(exchange, OperationRequest.Type.BALANCE));
+            server.createContext("/deposit", exchange -> handle(exchange, OperationRequest.Type.DEPOSIT));
+            server.createContext("/withdraw", exchange -> handle(exchange, OperationRequest.Type.WITHDRAW));
+            server.createContext("/transfer", exchange -> handle(exchange, OperationRequest.Type.TRANSFER));
+        }
+        
+        void start() {
+            server.start();
+        }
+        
+        void stop() {
+            server.stop(1);
+        }
+        
+        private void handle(HttpExchange exchange, OperationRequest.Type type) throws IOException {
+            try {
+                boolean isGet = exchange.getRequestMethod().equals("GET");
+                if (type == OperationRequest.Type.BALANCE ? !isGet : !exchange.getRequestMethod().equals("POST")) {
+                    respond(exchange, 405, "{\"status\":\"REJECTED\",\"message\":\"Method not allowed.\"}");
+                    return;
+                }
+                
+                Map<String, String> params = parseForm(isGet ? exchange.getRequestURI().getRawQuery()
+                                                             : readBody(exchange.getRequestBody()));
+                String accountNumber = params.getOrDefault("account", "");
+                String pin = exchange.getRequestHeaders().getFirst(PIN_HEADER);
+                if (pin == null) {
+                    // A PIN in a query string ends up in access logs and proxies, so GET only takes the header
+                    pin = isGet ? "" : params.getOrDefault("pin", "");
+                }
+                Account account;
+                try {
+                    account = bank.authenticate(accountNumber, pin);
+                } catch (BankingException e) {
+                    respond(exchange, 429, body(OperationResult.rejected(e.getMessage())));
+                    return;
+                }
+                if (account == null) {
+                    respond(exchange, 401, body(OperationResult.rejected("Invalid account number or PIN.")));
+                    return;
+                }
+                
+                long amount = 0;
+                if (type != OperationRequest.Type.BALANCE) {
+                    try {
+                        amount = Money.parse(params.getOrDefault("amount", ""));
+                    } catch (NumberFormatException e) {
+                        respond(exchange, 400, body(OperationResult.rejected("Invalid amount.")));
+                        return;
+                    }
+                }
+                
+                OperationResult result = bank.execute(
+                    new OperationRequest(type, accountNumber, params.get("to"), amount));
+                int code = result.isSuccess() ? 200
+                         : result.getStatus() == OperationResult.Status.REJECTED ? 422 : 500;
+                respond(exchange, code, body(result));
+            } catch (SQLException e) {
+                respond(exchange, 500, body(OperationResult.error(e.getMessage())));
+            } catch (RuntimeException e) {
+                respond(exchange, 500, body(OperationResult.error("Internal error.")));
+                System.err.println("Error handling " + exchange.getRequestURI().getPath() + ": " + e);
+            } finally {
+                exchange.close();
+            }
+        }
+        
+        private static String readBody(InputStream in) throws IOException {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        
+        private static Map<String, String> parseForm(String form) {
+            Map<String, String> params = new HashMap<>();
+            if (form == null || form.isEmpty()) {
+                return params;
+            }
+            for (String pair : form.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                               URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+                }
+            }
+            return params;
+        }
+        
+        private static String body(OperationResult result) {
+            if (result.isSuccess()) {
+                return "{\"status\":\"OK\",\"balance\":\"" + Money.format(result.getBalance()) + "\"}";
+            }
+            String message = result.getMessage() == null ? "" : result.getMessage();
+            return "{\"status\":\"" + result.getStatus() + "\",\"message\":\""
+                + message.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}";
+        }
+        
+        private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(code, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+    
+    // Throughput and latency-percentile benchmark for the money-movement and history paths.
+    // Each operation gets a warmup phase followed by a timed phase on `threads` concurrent sessions.
+    // Worker i draws from a SplittableRandom seeded with SEED + i, so runs replay the same access pattern.
+    static class Benchmark {
+        static final int DEFAULT_THREADS = 16;
+        static final int DEFAULT_MEASURE_SECONDS = 30;
+        private static final Duration WARMUP = Duration.ofSeconds(10);
+        private static final int ACCOUNTS = 1000;
+        private static final long SEED = 42;
+        private static final long OPENING_BALANCE = Money.parse("1000000.00");
+        private static final long AMOUNT = Money.parse("1.00");
+        
+        private final OnlineBankingSystem bank;
+        private final int threads;
+        private final Duration measurement;
+        private String[] accounts;
+        
+        Benchmark(OnlineBankingSystem bank, int threads, Duration measurement) {
+            this.bank = bank;
+            this.threads = threads;
+            this.measurement = measurement;
+        }
+        
+        // Keeps the guard on the path so its cost is measured, but never lets it reject benchmark traffic
+        static VelocityGuard unlimitedGuard() {
+            return new VelocityGuard(VELOCITY_WINDOW, Integer.MAX_VALUE, Long.MAX_VALUE, true);
+        }
+        
+        void run() throws Exception {
+            accounts = createAccounts(bank, ACCOUNTS, OPENING_BALANCE);
+            System.out.printf("Benchmark: %d threads, %ds warmup, %ds measurement, %d accounts%n",
+                threads, WARMUP.getSeconds(), measurement.getSeconds(), ACCOUNTS);
+            System.out.printf("%-20s %12s %10s %10s %10s %10s %10s %8s%n",
+                "Operation", "ops/s", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us", "errors");
+            
+            BenchmarkOperation transfer = random -> {
+                int from = random.nextInt(ACCOUNTS);
+                int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                bank.transferFunds(accounts[from], accounts[to], AMOUNT);
+            };
+            measure("deposit", random -> bank.depositFunds(pick(random), AMOUNT));
+            measure("withdraw", random -> bank.withdrawFunds(pick(random), AMOUNT));
+            measure("transfer", transfer);
+            // Transfers write two ledger rows, so they show what journal batching saves;
+            // deposits and withdrawals write one and are the same either way
+            bank.batchJournal = false;
+            try {
+                measure("transfer (unbatched)", transfer);
+            } finally {
+                bank.batchJournal = true;
+            }
+            measure("history", random -> bank.fetchTransactionHistory(pick(random), null, HISTORY_PAGE_SIZE));
+        }
+        
+        private String pick(SplittableRandom random) {
+            return accounts[random.nextInt(ACCOUNTS)];
+        }
+        
+        static String[] createAccounts(OnlineBankingSystem bank, int count, long openingBalance)
+                throws SQLException, BankingException {
+            String sql = "INSERT INTO accounts (account_number, first_name, last_name, pin_hash, pin_salt) " +
+                         "VALUES (?, 'Benchmark', 'Account', ?, ?)";
+            String pinSalt = PinHasher.newSalt();
+            String pinHash = PinHasher.hash("0000", pinSalt);
+            String[] created = new String[count];
+            try (ConnectionPool.Lease lease = bank.pool.borrow();
+                 PreparedStatement pstmt = lease.connection().prepareStatement(sql)) {
+                for (int i = 0; i < count; i++) {
+                    created[i] = bank.accountNumbers.next(lease.connection());
+                    pstmt.setString(1, created[i]);
+                    pstmt.setString(2, pinHash);
+                    pstmt.setString(3, pinSalt);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+            // Fund through the normal path so balances and the ledger agree
+            for (String account : created) {
+                bank.depositFunds(account, openingBalance);
+            }
+            return created;
+        }
+        
+        private void measure(String name, BenchmarkOperation operation) throws Exception {
+            runPhase(operation, WARMUP);
+            PhaseResult result = runPhase(operation, measurement);
+            
+            long[] latencies = result.latencies;
+            Arrays.sort(latencies);
+            double seconds = measurement.toNanos() / 1e9;
+            System.out.printf("%-20s %12.1f %10d %10d %10d %10d %10d %8d%n",
+                name, latencies.length / seconds,
+                percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99),
+                percentile(latencies, 0.999), latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1000,
+                result.errors);
+        }
+        
+        private PhaseResult runPhase(BenchmarkOperation operation, Duration duration) throws Exception {
+            long deadline = System.nanoTime() + duration.toNanos();
+            List<Future<PhaseResult>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                SplittableRandom random = new SplittableRandom(SEED + i);
+                workers.add(bank.submitSession(() -> {
+                    long[] samples = new long[1024];
+                    int count = 0;
+                    long errors = 0;
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        try {
+                            operation.execute(random);
+                        } catch (SQLException | BankingException e) {
+                            errors++;
+                            continue;
+                        }
+                        if (count == samples.length) {
+                            samples = Arrays.copyOf(samples, count * 2);
+                        }
+                        samples[count++] = System.nanoTime() - start;
+                    }
+                    return new PhaseResult(Arrays.copyOf(samples, count), errors);
+                }));
+            }
+            
+            long[] merged = new long[0];
+            long errors = 0;
+            for (Future<PhaseResult> worker : workers) {
+                PhaseResult part = worker.get();
+                int offset = merged.length;
+                merged = Arrays.copyOf(merged, offset + part.latencies.length);
+                System.arraycopy(part.latencies, 0, merged, offset, part.latencies.length);
+                errors += part.errors;
+            }
+            return new PhaseResult(merged, errors);
+        }
+        
+        private static long percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1000;
+        }
+        
+        @FunctionalInterface
+        interface BenchmarkOperation {
+            void execute(SplittableRandom random) throws SQLException, BankingException;
+        }
+        
+        private static class PhaseResult {
+            private final long[] latencies;
+            private final long errors;
+            
+            PhaseResult(long[] latencies, long errors) {
+                this.latencies = latencies;
+                this.errors = errors;
+            }
+        }
+    }
+    
+    // Contention check for the money-movement paths: `threads` sessions run random transfers, deposits
+    // and withdrawals against a handful of accounts, sized so that overdraft attempts are common. Passes
+    // when money is conserved (closing total = opening total + deposits - withdrawals), no balance is
+    // negative and every balance equals the sum of its ledger rows, i.e. no update was lost.
+    static class StressTest {
+        static final int DEFAULT_THREADS = 32;
+        static final int DEFAULT_OPERATIONS = 500;
+        private static final int ACCOUNTS = 8;
+        private static final long SEED = 7;
+        private static final long OPENING_BALANCE = Money.parse("1000.00");
+        private static final long MAX_AMOUNT = Money.parse("400.00");
+        
+        private final OnlineBankingSystem bank;
+        private final int threads;
+        private final int operations;
+        
+        StressTest(OnlineBankingSystem bank, int threads, int operations) {
+            this.bank = bank;
+            this.threads = threads;
+            this.operations = operations;
+        }
+        
+        boolean run() throws Exception {
+            String[] accounts = Benchmark.createAccounts(bank, ACCOUNTS, OPENING_BALANCE);
+            AtomicLong netInflow = new AtomicLong();
+            AtomicLong completed = new AtomicLong();
+            AtomicLong rejected = new AtomicLong();
+            AtomicLong errors = new AtomicLong();
+            
+            System.out.printf("Stress test: %d threads x %d operations on %d accounts%n", threads, operations, ACCOUNTS);
+            long start = System.nanoTime();
+            List<Future<Void>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                SplittableRandom random = new SplittableRandom(SEED + i);
+                workers.add(bank.submitSession(() -> {
+                    for (int n = 0; n < operations; n++) {
+                        String account = accounts[random.nextInt(ACCOUNTS)];
+                        long amount = 1 + random.nextLong(MAX_AMOUNT);
+                        int kind = random.nextInt(10);
+                        try {
+                            if (kind < 6) {
+                                String to = accounts[random.nextInt(ACCOUNTS)];
+                                if (to.equals(account)) {
+                                    continue;
+                                }
+                                bank.transferFunds(account, to, amount);
+                            } else if (kind < 8) {
+                                bank.depositFunds(account, amount);
+                                netInflow.addAndGet(amount);
+                            } else {
+                                bank.withdrawFunds(account, amount);
+                                netInflow.addAndGet(-amount);
+                            }
+                            completed.incrementAndGet();
+                        } catch (BankingException e) {
+                            rejected.incrementAndGet();
+                        } catch (SQLException e) {
+                            errors.incrementAndGet();
+                            System.err.println("Operation failed: " + e.getMessage());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> worker : workers) {
+                worker.get();
+            }
+            
+            System.out.printf("%d completed, %d rejected, %d errors in %d ms%n", completed.get(), rejected.get(),
+                errors.get(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return verify(accounts, netInflow.get());
+        }
+        
+        private boolean verify(String[] accounts, long netInflow) throws SQLException {
+            String sql = "SELECT a.account_number, a.balance, COALESCE(SUM(t.amount), 0) AS ledger " +
+                         "FROM accounts a LEFT JOIN transactions t ON t.account_number = a.account_number " +
+                         "WHERE a.account_number = ANY(?) GROUP BY a.account_number, a.balance";
+            boolean passed = true;
+            long total = 0;
+            try (ConnectionPool.Lease lease = bank.pool.borrow();
+                 PreparedStatement pstmt = lease.connection().prepareStatement(sql)) {
+                pstmt.setArray(1, lease.connection().createArrayOf("varchar", accounts));
+                ResultSet rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    String account = rs.getString("account_number");
+                    long ledgerBalance = Money.fromDecimal(rs.getBigDecimal("ledger"));
+                    long balance = bank.ledger != null ? bank.ledger.balance(account)
+                                                       : Money.fromDecimal(rs.getBigDecimal("balance"));
+                    total += balance;
+                    if (balance < 0) {
+                        passed = false;
+                        System.out.println("Account " + account + " is negative: $" + Money.format(balance));
+                    }
+                    if (balance != ledgerBalance) {
+                        passed = false;
+                        System.out.println("Account " + account + ": balance $" + Money.format(balance) +
+                                           ", ledger $" + Money.format(ledgerBalance));
+                    }
+                }
+            }
+            
+            long expected = OPENING_BALANCE * ACCOUNTS + netInflow;
+            if (total != expected) {
+                passed = false;
+                System.out.println("Money not conserved: expected $" + Money.format(expected) +
+                                   ", found $" + Money.format(total));
+            }
+            System.out.println(passed ? "Stress test passed." : "Stress test FAILED.");
+            return passed;
+        }
+    }
+    
+    // Randomized property check for the ledger: a seeded sequence of deposits, withdrawals and transfers
+    // (including overdrafts and unknown accounts) runs through execute(), with checkpoints folded at random
+    // points in event-sourced mode. After every operation the reported balance must match a simple model,
+    // and at regular intervals a from-scratch replay of checkpoint + ledger must equal both the live
+    // balances and the model. A failure prints the seed so the exact sequence can be rerun.
+    static class LedgerPropertyCheck {
+        static final int DEFAULT_OPERATIONS = 2000;
+        private static final int ACCOUNTS = 16;
+        private static final int REPLAY_INTERVAL = 100;
+        private static final double CHECKPOINT_PROBABILITY = 0.02;
+        private static final long OPENING_BALANCE = Money.parse("500.00");
+        private static final long MAX_AMOUNT = Money.parse("250.00");
+        
+        private final OnlineBankingSystem bank;
+        private final int operations;
+        private final long seed;
+        private final Map<String, Long> model = new HashMap<>();
+        
+        LedgerPropertyCheck(OnlineBankingSystem bank, int operations, long seed) {
+            this.bank = bank;
+            this.operations = operations;
+            this.seed = seed;
+        }
+        
+        boolean run() throws Exception {
+            System.out.printf("Ledger check: %d operations, seed %d, %s mode%n",
+                operations, seed, bank.ledger != null ? "event-sourced" : "balance");
+            String[] accounts = Benchmark.createAccounts(bank, ACCOUNTS, OPENING_BALANCE);
+            for (String account : accounts) {
+                model.put(account, OPENING_BALANCE);
+            }
+            
+            SplittableRandom random = new SplittableRandom(seed);
+            for (int n = 1; n <= operations; n++) {
+                String account = accounts[random.nextInt(ACCOUNTS)];
+                // Occasionally aim at an account that does not exist; it must be rejected without effect
+                String to = random.nextInt(50) == 0 ? "0000000000" : accounts[random.nextInt(ACCOUNTS)];
+                long amount = 1 + random.nextLong(MAX_AMOUNT);
+                OperationRequest request;
+                switch (random.nextInt(3)) {
+                    case 0:
+                        request = OperationRequest.deposit(account, amount);
+                        break;
+                    case 1:
+                        request = OperationRequest.withdraw(account, amount);
+                        break;
+                    default:
+                        request = OperationRequest.transfer(account, to, amount);
+                }
+                
+                OperationResult result = bank.execute(request);
+                if (result.getStatus() == OperationResult.Status.ERROR) {
+                    return fail(n, request.getType() + " failed: " + result.getMessage());
+                }
+                Long expected = applyToModel(request);
+                if (result.isSuccess() != (expected != null)) {
+                    return fail(n, request.getType() + " was " + result.getStatus() + ", model expected "
+                                + (expected != null ? "OK" : "REJECTED"));
+                }
+                if (expected != null && result.getBalance() != expected) {
+                    return fail(n, request.getType() + " reported $" + Money.format(result.getBalance()) +
+                                ", model has $" + Money.format(expected));
+                }
+                
+                if (bank.ledger != null && random.nextDouble() < CHECKPOINT_PROBABILITY) {
+                    bank.checkpointLedger();
+                }
+                if ((n % REPLAY_INTERVAL == 0 || n == operations) && !replayMatches(n, accounts)) {
+                    return false;
+                }
+            }
+            
+            if (bank.verifyLedger() != 0) {
+                return fail(operations, "verify-ledger found mismatches");
+            }
+            System.out.println("Ledger check passed.");
+            return true;
+        }
+        
+        // Returns the source account's new balance, or null if the operation must be refused
+        private Long applyToModel(OperationRequest request) {
+            String account = request.getAccountNumber();
+            long amount = request.getAmount();
+            long balance = model.get(account);
+            switch (request.getType()) {
+                case DEPOSIT:
+                    model.put(account, balance + amount);
+                    return balance + amount;
+                case WITHDRAW:
+                    if (balance < amount) {
+                        return null;
+                    }
+                    model.put(account, balance - amount);
+                    return balance - amount;
+                default:
+                    String to = request.getToAccountNumber();
+                    if (to.equals(account) || !model.containsKey(to) || balance < amount) {
+                        return null;
+                    }
+                    model.put(account, balance - amount);
+                    model.merge(to, amount, Long::sum);
+                    return balance - amount;
+            }
+        }
+        
+        private boolean replayMatches(int operation, String[] accounts) throws SQLException, BankingException {
+            LedgerProjection replayed = new LedgerProjection();
+            bank.replayLedger(replayed);
+            for (String account : accounts) {
+                long live = bank.currentBalance(account);
+                long expected = model.get(account);
+                if (replayed.balance(account) != live || live != expected) {
+                    return fail(operation, "account " + account + ": replay $" + Money.format(replayed.balance(account)) +
+                                ", live $" + Money.format(live) + ", model $" + Money.format(expected));
+                }
+            }
+            return true;
+        }
+        
+        private boolean fail(int operation, String message) {
+            System.out.println("Ledger check FAILED at operation " + operation + " (seed " + seed + "): " + message);
+            return false;
+        }
+    }
+    
+    // Randomized property check for Money, with no database: each case draws an amount (edge values,
+    // small, mid-range or anywhere in a long) and a decimal string, and checks that formatting agrees
+    // with BigDecimal and round-trips through parse, that decimal conversion round-trips, that sums and
+    // differences agree with cent arithmetic, and that parse accepts at most two decimals and rejects
+    // anything else or out of range. Parsing is checked against a digit-string reference built with
+    // BigInteger. Cheap enough for millions of cases; a failure prints the seed and the case.
+    static class MoneyPropertyCheck {
+        static final int DEFAULT_CASES = 2_000_000;
+        private static final long[] EDGES = {
+            0, 1, -1, 9, -9, 10, -10, 99, -99, 100, -100, 101, -101,
+            Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE - 1, Long.MIN_VALUE + 1,
+            Long.MAX_VALUE / 100 * 100, Long.MIN_VALUE / 100 * 100
+        };
+        private static final BigInteger MIN_CENTS = BigInteger.valueOf(Long.MIN_VALUE);
+        private static final BigInteger MAX_CENTS = BigInteger.valueOf(Long.MAX_VALUE);
+        
+        private final int cases;
+        private final long seed;
+        
+        MoneyPropertyCheck(int cases, long seed) {
+            this.cases = cases;
+            this.seed = seed;
+        }
+        
+        boolean run() {
+            System.out.printf("Money check: %d cases, seed %d%n", cases, seed);
+            SplittableRandom random = new SplittableRandom(seed);
+            long started = System.nanoTime();
+            for (int n = 1; n <= cases; n++) {
+                long a = amount(random);
+                long b = amount(random);
+                String problem = checkAmount(a);
+                if (problem == null) {
+                    problem = checkArithmetic(a, b);
+                }
+                if (problem == null) {
+                    problem = checkParse(decimalText(random));
+                }
+                if (problem != null) {
+                    System.out.println("Money check FAILED at case " + n + " (seed " + seed + "): " + problem);
+                    return false;
+                }
+            }
+            System.out.printf("Money check passed in %d ms.%n", (System.nanoTime() - started) / 1_000_000);
+            return true;
+        }
+        
+        private static long amount(SplittableRandom random) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    return EDGES[random.nextInt(EDGES.length)];
+                case 1:
+                    return random.nextLong(-100_000, 100_001);
+                case 2:
+                    return random.nextLong(-10_000_000_000_000L, 10_000_000_000_001L);
+                default:
+                    return random.nextLong();
+            }
+        }
+        
+        private static String checkAmount(long cents) {
+            String formatted = Money.format(cents);
+            String expected = BigDecimal.valueOf(cents, 2).toPlainString();
+            if (!formatted.equals(expected)) {
+                return "format(" + cents + ") = " + formatted + ", expected " + expected;
+            }
+            try {
+                if (Money.parse(formatted) != cents) {
+                    return "parse(format(" + cents + ")) = " + Money.parse(formatted);
+                }
+            } catch (NumberFormatException e) {
+                return "parse(format(" + cents + ")) threw " + e.getMessage();
+            }
+            if (Money.fromDecimal(Money.toDecimal(cents)) != cents) {
+                return "fromDecimal(toDecimal(" + cents + ")) = " + Money.fromDecimal(Money.toDecimal(cents));
+            }
+            return null;
+        }
+        
+        private static String checkArithmetic(long a, long b) {
+            BigDecimal x = Money.toDecimal(a);
+            BigDecimal y = Money.toDecimal(b);
+            long sum;
+            try {
+                sum = Math.addExact(a, b);
+            } catch (ArithmeticException e) {
+                return fromDecimalOverflows(x.add(y)) ? null : "sum " + a + " + " + b + " should overflow";
+            }
+            if (Money.fromDecimal(x.add(y)) != sum) {
+                return "decimal sum of " + a + " and " + b + " is " + Money.fromDecimal(x.add(y));
+            }
+            long difference;
+            try {
+                difference = Math.subtractExact(a, b);
+            } catch (ArithmeticException e) {
+                return fromDecimalOverflows(x.subtract(y)) ? null : "difference " + a + " - " + b + " should overflow";
+            }
+            if (Money.fromDecimal(x.subtract(y)) != difference) {
+                return "decimal difference of " + a + " and " + b + " is " + Money.fromDecimal(x.subtract(y));
+            }
+            return null;
+        }
+        
+        private static boolean fromDecimalOverflows(BigDecimal value) {
+            try {
+                Money.fromDecimal(value);
+                return false;
+            } catch (ArithmeticException e) {
+                return true;
+            }
+        }
+        
+        // Optional sign and padding, up to 20 integer digits and 0-4 decimals, so some cases overflow
+        // and some carry too many decimals
+        private static String decimalText(SplittableRandom random) {
+            StringBuilder text = new StringBuilder();
+            if (random.nextInt(8) == 0) {
+                text.append(' ');
+            }
+            if (random.nextBoolean()) {
+                text.append('-');
+            }
+            int integerDigits = 1 + random.nextInt(random.nextBoolean() ? 4 : 20);
+            for (int i = 0; i < integerDigits; i++) {
+                text.append((char) ('0' + random.nextInt(10)));
+            }
+            int decimals = random.nextInt(5);
+            if (decimals > 0) {
+                text.append('.');
+                for (int i = 0; i < decimals; i++) {
+                    text.append((char) ('0' + random.nextInt(10)));
+                }
+            }
+            if (random.nextInt(8) == 0) {
+                text.append(' ');
+            }
+            return text.toString();
+        }
+        
+        private static String checkParse(String text) {
+            String trimmed = text.trim();
+            int point = trimmed.indexOf('.');
+            String integerPart = point < 0 ? trimmed : trimmed.substring(0, point);
+            String fraction = point < 0 ? "" : trimmed.substring(point + 1);
+            BigInteger expected = null;
+            if (fraction.length() <= 2) {
+                BigInteger cents = new BigInteger(integerPart + (fraction + "00").substring(0, 2));
+                if (cents.compareTo(MIN_CENTS) >= 0 && cents.compareTo(MAX_CENTS) <= 0) {
+                    expected = cents;
+                }
+            }
+            try {
+                long parsed = Money.parse(text);
+                if (expected == null) {
+                    return "parse(\"" + text + "\") = " + parsed + ", expected NumberFormatException";
+                }
+                return parsed == expected.longValue() ? null
+                    : "parse(\"" + text + "\") = " + parsed + ", expected " + expected;
+            } catch (NumberFormatException e) {
+                return expected == null ? null
+                    : "parse(\"" + text + "\") threw " + e.getMessage() + ", expected " + expected;
+            }
+        }
+    }
+    
+    // In-memory sliding-window limits on money leaving an account. Each account has a ring of
+    // recent outflows with running count/amount totals; expiry pops from the head, so a check is
+    // amortised O(1). Accounts are spread over lock stripes so unrelated accounts never contend.
+    static class VelocityGuard {
+        private static final int STRIPES = 64;
+        
+        private final long windowMillis;
+        private final int maxCount;
+        private final long maxAmount;
+        private final boolean block;
+        private final Stripe[] stripes = new Stripe[STRIPES];
+        
+        public VelocityGuard(Duration window, int maxCount, long maxAmount, boolean block) {
+            this.windowMillis = window.toMillis();
+            this.maxCount = maxCount;
+            this.maxAmount = maxAmount;
+            this.block = block;
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new Stripe();
+            }
+        }
+        
+        private Stripe stripeFor(String accountNumber) {
+            return stripes[(accountNumber.hashCode() & 0x7fffffff) % STRIPES];
+        }
+        
+        // Checks and records an outflow in one step so concurrent callers cannot jointly overshoot.
+        // The returned reservation must be released if the operation does not go through.
+        public long reserve(String accountNumber, long amount) throws BankingException {
+            long now = System.currentTimeMillis();
+            Stripe stripe = stripeFor(accountNumber);
+            synchronized (stripe) {
+                Window window = stripe.windows.computeIfAbsent(accountNumber, k -> new Window());
+                window.expire(now - windowMillis);
+                if (window.count + 1 > maxCount || window.total + amount > maxAmount) {
+                    if (block) {
+                        throw new BankingException("Velocity limit exceeded.");
+                    }
+                    System.err.println("[velocity] Account " + accountNumber + " exceeded limits: " +
+                        (window.count + 1) + " outflows, $" + Money.format(window.total + amount) + " in window");
+                }
+                return window.add(now, amount);
+            }
+        }
+        
+        public void release(String accountNumber, long reservation) {
+            Stripe stripe = stripeFor(accountNumber);
+            synchronized (stripe) {
+                Window window = stripe.windows.get(accountNumber);
+                if (window != null) {
+                    window.cancel(reservation);
+                }
+            }
+        }
+        
+        public void record(String accountNumber, long amount, long timeMillis) {
+            Stripe stripe = stripeFor(accountNumber);
+            synchronized (stripe) {
+                stripe.windows.computeIfAbsent(accountNumber, k -> new Window()).add(timeMillis, amount);
+            }
+        }
+        
+        public void purgeIdle() {
+            long cutoff = System.currentTimeMillis() - windowMillis;
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    Iterator<Window> it = stripe.windows.values().iterator();
+                    while (it.hasNext()) {
+                        Window window = it.next();
+                        window.expire(cutoff);
+                        if (window.isEmpty()) {
+                            it.remove();
+                        }
+                    }
+                }
+            }
+        }
+        
+        private static class Stripe {
+            private final Map<String, Window> windows = new HashMap<>();
+        }
+        
+        // Ring buffer addressed by ever-increasing sequence numbers; capacity stays a power of two
+        private static class Window {
+            private long[] times = new long[8];
+            private long[] amounts = new long[8];
+            private boolean[] live = new boolean[8];
+            private long head;
+            private long tail;
+            private int count;
+            private long total;
+            
+            long add(long timeMillis, long amount) {
+                if (tail - head == times.length) {
+                    grow();
+                }
+                int slot = slot(tail);
+                times[slot] = timeMillis;
+                amounts[slot] = amount;
+                live[slot] = true;
+                count++;
+                total += amount;
+                return tail++;
+            }
+            
+            void cancel(long sequence) {
+                if (sequence >= head && sequence < tail && live[slot(sequence)]) {
+                    int slot = slot(sequence);
+                    live[slot] = false;
+                    count--;
+                    total -= amounts[slot];
+                }
+            }
+            
+            void expire(long cutoff) {
+                while (head < tail && times[slot(head)] <= cutoff) {
+                    int slot = slot(head);
+                    if (live[slot]) {
+                        live[slot] = false;
+                        count--;
+                        total -= amounts[slot];
+                    }
+                    head++;
+                }
+            }
+            
+            boolean isEmpty() {
+                return head == tail;
+            }
+            
+            private int slot(long sequence) {
+                return (int) (sequence & (times.length - 1));
+            }
+            
+            private void grow() {
+                int capacity = times.length * 2;
+                long[] newTimes = new long[capacity];
+                long[] newAmounts = new long[capacity];
+                boolean[] newLive = new boolean[capacity];
+                for (long seq = head; seq < tail; seq++) {
+                    int from = slot(seq);
+                    int to = (int) (seq & (capacity - 1));
+                    newTimes[to] = times[from];
+                    newAmounts[to] = amounts[from];
+                    newLive[to] = live[from];
+                }
+                times = newTimes;
+                amounts = newAmounts;
+                live = newLive;
+            }
+        }
+    }
+    
+    // In-memory balances for event-sourced mode, rebuilt from the ledger at startup
+    static class LedgerProjection {
+        private static final int LOCK_STRIPES = 256;
+        
+        private final ConcurrentHashMap<String, AtomicLong> balances = new ConcurrentHashMap<>();
+        private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+        private final ReentrantReadWriteLock appendGate = new ReentrantReadWriteLock();
+        
+        public LedgerProjection() {
+            for (int i = 0; i < LOCK_STRIPES; i++) {
+                locks[i] = new ReentrantLock();
+            }
+        }
+        
+        public long balance(String accountNumber) {
+            AtomicLong balance = balances.get(accountNumber);
+            return balance != null ? balance.get() : 0;
+        }
+        
+        public boolean isKnown(String accountNumber) {
+            return balances.containsKey(accountNumber);
+        }
+        
+        public void apply(String accountNumber, long amount) {
+            balances.computeIfAbsent(accountNumber, k -> new AtomicLong()).addAndGet(amount);
+        }
+        
+        public ReentrantReadWriteLock appendGate() {
+            return appendGate;
+        }
+        
+        // Stripes are always taken in index order, so two transfers in opposite directions cannot deadlock
+        public AccountLocks lock(String first, String second) {
+            int a = first != null ? stripe(first) : -1;
+            int b = second != null ? stripe(second) : -1;
+            int low = Math.min(a, b);
+            int high = Math.max(a, b);
+            if (low >= 0 && low != high) {
+                locks[low].lock();
+            }
+            locks[high].lock();
+            return () -> {
+                locks[high].unlock();
+                if (low >= 0 && low != high) {
+                    locks[low].unlock();
+                }
+            };
+        }
+        
+        private static int stripe(String accountNumber) {
+            return (accountNumber.hashCode() & 0x7fffffff) % LOCK_STRIPES;
+        }
+        
+        @FunctionalInterface
+        interface AccountLocks {
+            void unlock();
+        }
+    }
+    
+    static final class PinHasher {
+        private static final SecureRandom RANDOM = new SecureRandom();
+        private static final int SALT_BYTES = 16;
+        
+        private PinHasher() {
+        }
+        
+        public static String newSalt() {
+            byte[] salt = new byte[SALT_BYTES];
+            RANDOM.nextBytes(salt);
+            return toHex(salt);
+        }
+        
+        public static String hash(String pin, String salt) {
+            try {
+                MessageDigest md = MessageDigest.getInstance("SHA-256");
+                md.update(salt.getBytes(StandardCharsets.UTF_8));
+                return toHex(md.digest(pin.getBytes(StandardCharsets.UTF_8)));
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException("Error hashing PIN", e);
+            }
+        }
+        
+        // Constant-time comparison so response timing does not reveal how much of the hash matched
+        public static boolean matches(String pin, String salt, String expectedHash) {
+            return MessageDigest.isEqual(
+                hash(pin, salt).getBytes(StandardCharsets.UTF_8),
+                expectedHash.getBytes(StandardCharsets.UTF_8));
+        }
+        
+        private static String toHex(byte[] bytes) {
+            StringBuilder sb = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        }
+    }
+    
+    // Failed-attempt scores per account number that halve every `halfLife`, so occasional typos fade
+    // away. Reaching the limit locks the account for one half-life; entries age out without a sweep
+    // of the database.
+    static class LoginThrottle {
+        private final int maxFailures;
+        private final long halfLifeMillis;
+        private final ConcurrentHashMap<String, FailureScore> scores = new ConcurrentHashMap<>();
+        
+        public LoginThrottle(int maxFailures, Duration halfLife) {
+            this.maxFailures = maxFailures;
+            this.halfLifeMillis = halfLife.toMillis();
+        }
+        
+        public boolean isLocked(String accountNumber) {
+            FailureScore score = scores.get(accountNumber);
+            return score != null && score.lockedUntil > System.currentTimeMillis();
+        }
+        
+        public void recordFailure(String accountNumber) {
+            long now = System.currentTimeMillis();
+            scores.compute(accountNumber, (k, score) -> {
+                double value = (score == null ? 0 : score.decayed(now, halfLifeMillis)) + 1;
+                long lockedUntil = value >= maxFailures ? now + halfLifeMillis
+                                                        : (score == null ? 0 : score.lockedUntil);
+                return new FailureScore(value, now, lockedUntil);
+            });
+        }
+        
+        public void recordSuccess(String accountNumber) {
+            scores.remove(accountNumber);
+        }
+        
+        public void purgeDecayed() {
+            long now = System.currentTimeMillis();
+            scores.values().removeIf(score -> score.lockedUntil <= now && score.decayed(now, halfLifeMillis) < 0.5);
+        }
+        
+        private static class FailureScore {
+            private final double value;
+            private final long updatedAt;
+            private final long lockedUntil;
+            
+            FailureScore(double value, long updatedAt, long lockedUntil) {
+                this.value = value;
+                this.updatedAt = updatedAt;
+                this.lockedUntil = lockedUntil;
+            }
+            
+            double decayed(long now, long halfLifeMillis) {
+                return value * Math.pow(0.5, (double) (now - updatedAt) / halfLifeMillis);
+            }
+        }
+    }
+    
+    static class StandingOrder {
+        private final int orderId;
+        private final String fromAccount;
+        private final String toAccount;
+        private final long amount;
+        private final int intervalDays;
+        private final LocalDateTime nextRun;
+        
+        public StandingOrder(int orderId, String fromAccount, String toAccount, long amount, int intervalDays,
+                             LocalDateTime nextRun) {
+            this.orderId = orderId;
+            this.fromAccount = fromAccount;
+            this.toAccount = toAccount;
+            this.amount = amount;
+            this.intervalDays = intervalDays;
+            this.nextRun = nextRun;
+        }
+        
+        public StandingOrder advanced() {
+            return new StandingOrder(orderId, fromAccount, toAccount, amount, intervalDays,
+                                     nextRun.plusDays(intervalDays));
+        }
+        
+        public int getOrderId() {
+            return orderId;
+        }
+        
+        public String getFromAccount() {
+            return fromAccount;
+        }
+        
+        public String getToAccount() {
+            return toAccount;
+        }
+        
+        public long getAmount() {
+            return amount;
+        }
+        
+        public int getIntervalDays() {
+            return intervalDays;
+        }
+        
+        public LocalDateTime getNextRun() {
+            return nextRun;
+        }
+    }
+    
+    static class BalanceSnapshot {
+        private final long balance;
+        private final long version;
+        
+        public BalanceSnapshot(long balance, long version) {
+            this.balance = balance;
+            this.version = version;
+        }
+        
+        public long getBalance() {
+            return balance;
+        }
+        
+        public long getVersion() {
+            return version;
+        }
+    }
+    
+    // Bounded LRU of account balances. Entries only move forward in version, so a slow thread
+    // publishing an older snapshot cannot overwrite a newer one. Writes from other processes never
+    // reach this cache, so an entry is only trusted for ttl after it was stored.
+    static class AccountCache {
+        private final Map<String, CachedBalance> entries;
+        private final long ttlNanos;
+        
+        public AccountCache(int capacity, Duration ttl) {
+            this.ttlNanos = ttl.toNanos();
+            this.entries = new LinkedHashMap<String, CachedBalance>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedBalance> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+        
+        public synchronized BalanceSnapshot get(String accountNumber) {
+            CachedBalance cached = entries.get(accountNumber);
+            if (cached == null) {
+                return null;
+            }
+            if (System.nanoTime() - cached.storedAt > ttlNanos) {
+                entries.remove(accountNumber);
+                return null;
+            }
+            return cached.snapshot;
+        }
+        
+        public synchronized void put(String accountNumber, BalanceSnapshot snapshot) {
+            CachedBalance existing = entries.get(accountNumber);
+            if (existing == null || existing.snapshot.getVersion() <= snapshot.getVersion()) {
+                entries.put(accountNumber, new CachedBalance(snapshot, System.nanoTime()));
+            }
+        }
+        
+        private static class CachedBalance {
+            final BalanceSnapshot snapshot;
+            final long storedAt;
+            
+            CachedBalance(BalanceSnapshot snapshot, long storedAt) {
+                this.snapshot = snapshot;
+                this.storedAt = storedAt;
+            }
+        }
+    }
+    
+    static class AccountStatement {
+        private final String accountNumber;
+        private final LocalDate from;
+        private final LocalDate to;
+        private final long openingBalance;
+        private final long closingBalance;
+        private final List<TransactionRecord> lines;
+        
+        public AccountStatement(String accountNumber, LocalDate from, LocalDate to, long openingBalance,
+                                long closingBalance, List<TransactionRecord> lines) {
+            this.accountNumber = accountNumber;
+            this.from = from;
+            this.to = to;
+            this.openingBalance = openingBalance;
+            this.closingBalance = closingBalance;
+            this.lines = lines;
+        }
+        
+        public String getAccountNumber() {
+            return accountNumber;
+        }
+        
+        public LocalDate getFrom() {
+            return from;
+        }
+        
+        public LocalDate getTo() {
+            return to;
+        }
+        
+        public long getOpeningBalance() {
+            return openingBalance;
+        }
+        
+        public long getClosingBalance() {
+            return closingBalance;
+        }
+        
+        public List<TransactionRecord> getLines() {
+            return lines;
+        }
+    }
+    
+    static class TransactionRecord {
+        private final long id;
+        private final String type;
+        private final long amount;
+        private final Timestamp timestamp;
+        
+        public TransactionRecord(long id, String type, long amount, Timestamp timestamp) {
+            this.id = id;
+            this.type = type;
+            this.amount = amount;
+            this.timestamp = timestamp;
+        }
+        
+        public long getId() {
+            return id;
+        }
+        
+        public String getType() {
+            return type;
+        }
+        
+        public long getAmount() {
+            return amount;
+        }
+        
+        public Timestamp getTimestamp() {
+            return timestamp;
+        }
+    }
+    
+    static class HistoryCursor {
+        private final Timestamp timestamp;
+        private final long id;
+        
+        public HistoryCursor(Timestamp timestamp, long id) {
+            this.timestamp = timestamp;
+            this.id = id;
+        }
+        
+        public Timestamp getTimestamp() {
+            return timestamp;
+        }
+        
+        public long getId() {
+            return id;
+        }
+    }
+    
+    static class HistoryPage {
+        private final List<TransactionRecord> records;
+        private final HistoryCursor nextCursor;
+        
+        public HistoryPage(List<TransactionRecord> records, HistoryCursor nextCursor) {
+            this.records = records;
+            this.nextCursor = nextCursor;
+        }
+        
+        public List<TransactionRecord> getRecords() {
+            return records;
+        }
+        
+        // null when this is the last page
+        public HistoryCursor getNextCursor() {
+            return nextCursor;
+        }
+    }
+    
+    static class Account {
+        private String accountNumber;
+        private String firstName;
+        private String lastName;
+        private String pinHash;
+        private String pinSalt;
+        private long balance;
+        
+        public Account(String accountNumber, String firstName, String lastName, String pinHash, String pinSalt,
+                       long balance) {
+            this.accountNumber = accountNumber;
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.pinHash = pinHash;
+            this.pinSalt = pinSalt;
+            this.balance = balance;
+        }
+        
+        public String getAccountNumber() {
+            return accountNumber;
+        }
+        
+        public String getFirstName() {
             return firstName;
         }
         
@@ -547,26 +3633,31 @@ public class OnlineBankingSystem {
             return lastName;
         }
         
-        public String getPin() {
-            return pin;
+        public String getPinHash() {
+            return pinHash;
+        }
+        
+        public String getPinSalt() {
+            return pinSalt;
         }
         
-        public void setPin(String pin) {
-            this.pin = pin;
+        public void setPinHash(String pinHash, String pinSalt) {
+            this.pinHash = pinHash;
+            this.pinSalt = pinSalt;
         }
         
-        public double getBalance() {
+        public long getBalance() {
             return balance;
         }
         
-        public void setBalance(double balance) {
+        public void setBalance(long balance) {
             this.balance = balance;
         }
         
         public void display() {
             System.out.println("\nAccount Number: " + accountNumber);
             System.out.println("Account Holder: " + firstName + " " + lastName);
-            System.out.printf("Current Balance: $%.2f%n", balance);
+            System.out.println("Current Balance: $" + Money.format(balance));
         }
     }
 }
@@ -1,28 +1,131 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class ProjectManager {
     private static final String DB_URL = "jdbc:postgresql://localhost:5432/project_management";
     private static final String DB_USER = "postgres";
     private static final String DB_PASSWORD = "2002";
+    private static final int POOL_SIZE = 20;
+    private static final long POOL_BORROW_TIMEOUT_MS = 5000;
+    private static final int STATEMENT_CACHE_SIZE = 64;
+    private static final int CRITICAL_PATH_DISPLAY_LIMIT = 20;
+    private static final int IMPORT_BATCH_SIZE = Integer.getInteger("pm.import.batch.size", 5000);
+    private static final int EXPORT_FETCH_SIZE = 1000;
+    private static final int LIST_PAGE_SIZE = 20;
+    private static final int SEARCH_RESULT_LIMIT = 20;
+    private static final int DEFAULT_SESSION_PORT = 7070;
+    private static final Duration DASHBOARD_TTL = Duration.ofSeconds(Long.getLong("pm.dashboard.ttl.seconds", 60));
     
-    private Connection connection;
+    private static final String TASK_EVENT_INSERT =
+        "INSERT INTO task_events (task_id, event_type, old_value, new_value, version) VALUES (?, ?, ?, ?, ?)";
+    private static final String TASK_CONFLICT_STATE = "40001";
+    
+    // Workflow states, in menu order; project_task_summary keeps one count column per entry of STATUS_COLUMNS
+    private static final String[] TASK_STATUSES = {"Not Started", "In Progress", "On Hold", "Completed"};
+    private static final String[] STATUS_COLUMNS =
+        {"not_started_tasks", "in_progress_tasks", "on_hold_tasks", "completed_tasks"};
+    
+    private static final String PROJECT_SUMMARY_UPSERT =
+        "INSERT INTO project_task_summary (project_id, total_tasks, not_started_tasks, in_progress_tasks, " +
+        "on_hold_tasks, completed_tasks) VALUES (?, ?, ?, ?, ?, ?) " +
+        "ON CONFLICT (project_id) DO UPDATE SET " +
+        "total_tasks = project_task_summary.total_tasks + EXCLUDED.total_tasks, " +
+        "not_started_tasks = project_task_summary.not_started_tasks + EXCLUDED.not_started_tasks, " +
+        "in_progress_tasks = project_task_summary.in_progress_tasks + EXCLUDED.in_progress_tasks, " +
+        "on_hold_tasks = project_task_summary.on_hold_tasks + EXCLUDED.on_hold_tasks, " +
+        "completed_tasks = project_task_summary.completed_tasks + EXCLUDED.completed_tasks";
+    private static final String USER_SUMMARY_UPSERT =
+        "INSERT INTO user_task_summary (user_id, total_tasks, completed_tasks) VALUES (?, ?, ?) " +
+        "ON CONFLICT (user_id) DO UPDATE SET " +
+        "total_tasks = user_task_summary.total_tasks + EXCLUDED.total_tasks, " +
+        "completed_tasks = user_task_summary.completed_tasks + EXCLUDED.completed_tasks";
+    private static final String USER_OPEN_DUE_UPSERT =
+        "INSERT INTO user_open_tasks_by_due (user_id, due_date, open_tasks) VALUES (?, ?, ?) " +
+        "ON CONFLICT (user_id, due_date) DO UPDATE SET " +
+        "open_tasks = user_open_tasks_by_due.open_tasks + EXCLUDED.open_tasks";
+    
+    // Shared by every session, the overdue watcher's timer thread and the dashboard workers
+    private final ConnectionPool pool;
+    private final OverdueWatcher overdueWatcher;
+    private final ReportDashboard dashboard;
+    // The session's own console: stdin/stdout for the local CLI, the socket for a served session
     private Scanner scanner;
+    private final PrintStream out;
+    private final PrintStream err;
     private DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
     
-    public ProjectManager() {
+    public ProjectManager(ConnectionPool pool, OverdueWatcher overdueWatcher, ReportDashboard dashboard,
+                          Scanner scanner) {
+        this(pool, overdueWatcher, dashboard, scanner, System.out, System.err);
+    }
+    
+    public ProjectManager(ConnectionPool pool, OverdueWatcher overdueWatcher, ReportDashboard dashboard,
+                          Scanner scanner, PrintStream out, PrintStream err) {
+        this.pool = pool;
+        this.overdueWatcher = overdueWatcher;
+        this.dashboard = dashboard;
+        this.scanner = scanner;
+        this.out = out;
+        this.err = err;
+    }
+    
+    // A virtual thread per session on JDK 21+, a cached pool before that. Sessions mostly wait on
+    // their client; the connection pool is what limits how many touch the database at once.
+    static ExecutorService newSessionExecutor() {
         try {
-            connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-            scanner = new Scanner(System.in);
-            createTablesIfNotExist();
-        } catch (SQLException e) {
-            System.err.println("Error connecting to database: " + e.getMessage());
-            System.exit(1);
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
         }
     }
     
+    public static ConnectionPool openPool(int poolSize) throws SQLException {
+        return new ConnectionPool(DB_URL, DB_USER, DB_PASSWORD, poolSize, POOL_BORROW_TIMEOUT_MS, STATEMENT_CACHE_SIZE);
+    }
+    
     private void createTablesIfNotExist() throws SQLException {
         String createUsersTable = "CREATE TABLE IF NOT EXISTS users (" +
                                 "user_id SERIAL PRIMARY KEY, " +
@@ -47,20 +150,364 @@ public class ProjectManager {
                                 "due_date DATE, " +
                                 "assigned_to INTEGER REFERENCES users(user_id))";
         
-        try (Statement stmt = connection.createStatement()) {
+        // Remaining work in days, used by the critical-path schedule
+        String addEstimatedDaysColumn = "ALTER TABLE tasks ADD COLUMN IF NOT EXISTS " +
+                                      "estimated_days INTEGER NOT NULL DEFAULT 1 CHECK (estimated_days >= 0)";
+        
+        String createDependenciesTable = "CREATE TABLE IF NOT EXISTS task_dependencies (" +
+                                       "task_id INTEGER NOT NULL REFERENCES tasks(task_id) ON DELETE CASCADE, " +
+                                       "depends_on INTEGER NOT NULL REFERENCES tasks(task_id) ON DELETE CASCADE, " +
+                                       "PRIMARY KEY (task_id, depends_on), " +
+                                       "CHECK (task_id != depends_on))";
+        
+        String createDependsOnIndex = "CREATE INDEX IF NOT EXISTS idx_task_dependencies_depends_on " +
+                                    "ON task_dependencies (depends_on)";
+        
+        // Optimistic concurrency: every change bumps version and only applies to the version it was based on
+        String addVersionColumn = "ALTER TABLE tasks ADD COLUMN IF NOT EXISTS version INTEGER NOT NULL DEFAULT 0";
+        
+        // Append-only change history, written in the same transaction as the change itself
+        String createTaskEventsTable = "CREATE TABLE IF NOT EXISTS task_events (" +
+                                     "event_id BIGSERIAL PRIMARY KEY, " +
+                                     "task_id INTEGER NOT NULL REFERENCES tasks(task_id) ON DELETE CASCADE, " +
+                                     "event_type VARCHAR(20) NOT NULL, " +
+                                     "old_value VARCHAR(50), " +
+                                     "new_value VARCHAR(50), " +
+                                     "version INTEGER NOT NULL, " +
+                                     "occurred_at TIMESTAMP NOT NULL DEFAULT now())";
+        String createTaskEventsIndex = "CREATE INDEX IF NOT EXISTS idx_task_events_task ON task_events (task_id, event_id)";
+        
+        // Daily flow metrics, accumulated as each task completes so reports never rescan history
+        String createFlowTable = "CREATE TABLE IF NOT EXISTS task_flow_daily (" +
+                               "day DATE PRIMARY KEY, " +
+                               "completed_tasks INTEGER NOT NULL DEFAULT 0, " +
+                               "lead_samples INTEGER NOT NULL DEFAULT 0, " +
+                               "lead_seconds BIGINT NOT NULL DEFAULT 0, " +
+                               "cycle_samples INTEGER NOT NULL DEFAULT 0, " +
+                               "cycle_seconds BIGINT NOT NULL DEFAULT 0)";
+        
+        // Full-text search documents, maintained by PostgreSQL on every insert and update (names weigh more)
+        String addTaskSearchColumn = "ALTER TABLE tasks ADD COLUMN IF NOT EXISTS search_vector tsvector " +
+                                   "GENERATED ALWAYS AS (" +
+                                   "setweight(to_tsvector('english', coalesce(task_name, '')), 'A') || " +
+                                   "setweight(to_tsvector('english', coalesce(description, '')), 'B')) STORED";
+        String addProjectSearchColumn = "ALTER TABLE projects ADD COLUMN IF NOT EXISTS search_vector tsvector " +
+                                      "GENERATED ALWAYS AS (" +
+                                      "setweight(to_tsvector('english', coalesce(project_name, '')), 'A') || " +
+                                      "setweight(to_tsvector('english', coalesce(description, '')), 'B')) STORED";
+        String createTaskSearchIndex = "CREATE INDEX IF NOT EXISTS idx_tasks_search ON tasks USING GIN (search_vector)";
+        String createProjectSearchIndex = "CREATE INDEX IF NOT EXISTS idx_projects_search " +
+                                        "ON projects USING GIN (search_vector)";
+        
+        // Keyset listing indexes: each filterable column leads, followed by the (due_date, task_id) sort key.
+        // Priority has too few values to earn its own index and is checked against these rows instead.
+        String[] createListingIndexes = {
+            "CREATE INDEX IF NOT EXISTS idx_tasks_due_id ON tasks (due_date, task_id)",
+            "CREATE INDEX IF NOT EXISTS idx_tasks_status_due_id ON tasks (status, due_date, task_id)",
+            "CREATE INDEX IF NOT EXISTS idx_tasks_assignee_due_id ON tasks (assigned_to, due_date, task_id)",
+            "CREATE INDEX IF NOT EXISTS idx_tasks_project_due_id ON tasks (project_id, due_date, task_id)",
+            "CREATE INDEX IF NOT EXISTS idx_projects_target_id ON projects (target_date, project_id)",
+            "CREATE INDEX IF NOT EXISTS idx_projects_status_target_id ON projects (status, target_date, project_id)"
+        };
+        
+        // Report summaries, kept current by the task write paths in the same transaction.
+        // One count per status; total_tasks also covers any status outside TASK_STATUSES
+        String createProjectSummaryTable = "CREATE TABLE IF NOT EXISTS project_task_summary (" +
+                                         "project_id INTEGER PRIMARY KEY REFERENCES projects(project_id), " +
+                                         "total_tasks INTEGER NOT NULL DEFAULT 0, " +
+                                         "not_started_tasks INTEGER NOT NULL DEFAULT 0, " +
+                                         "in_progress_tasks INTEGER NOT NULL DEFAULT 0, " +
+                                         "on_hold_tasks INTEGER NOT NULL DEFAULT 0, " +
+                                         "completed_tasks INTEGER NOT NULL DEFAULT 0)";
+        
+        String createUserSummaryTable = "CREATE TABLE IF NOT EXISTS user_task_summary (" +
+                                      "user_id INTEGER PRIMARY KEY REFERENCES users(user_id), " +
+                                      "total_tasks INTEGER NOT NULL DEFAULT 0, " +
+                                      "completed_tasks INTEGER NOT NULL DEFAULT 0)";
+        
+        // Overdue depends on today's date, so open tasks are counted per due date and summed at read time
+        String createUserOpenDueTable = "CREATE TABLE IF NOT EXISTS user_open_tasks_by_due (" +
+                                      "user_id INTEGER NOT NULL REFERENCES users(user_id), " +
+                                      "due_date DATE NOT NULL, " +
+                                      "open_tasks INTEGER NOT NULL DEFAULT 0, " +
+                                      "PRIMARY KEY (user_id, due_date))";
+        
+        // Only open tasks can become overdue; the predicate matches the overdue report's WHERE clause
+        String createOpenDueIndex = "CREATE INDEX IF NOT EXISTS idx_tasks_open_due ON tasks (due_date) " +
+                                  "WHERE status != 'Completed'";
+        
+        // The last dashboard any process built; its row lock makes rebuilds single-flight across processes
+        String createDashboardTable = "CREATE TABLE IF NOT EXISTS report_dashboard (" +
+                                    "id INTEGER PRIMARY KEY CHECK (id = 1), " +
+                                    "built_at TIMESTAMP, " +
+                                    "body TEXT)";
+        String seedDashboardRow = "INSERT INTO report_dashboard (id) VALUES (1) ON CONFLICT (id) DO NOTHING";
+        
+        try (ConnectionPool.Lease lease = pool.borrow();
+             Statement stmt = lease.connection().createStatement()) {
             stmt.execute(createUsersTable);
             stmt.execute(createProjectsTable);
             stmt.execute(createTasksTable);
+            stmt.execute(addEstimatedDaysColumn);
+            stmt.execute(createDependenciesTable);
+            stmt.execute(createDependsOnIndex);
+            for (String createIndex : createListingIndexes) {
+                stmt.execute(createIndex);
+            }
+            stmt.execute(addVersionColumn);
+            stmt.execute(createTaskEventsTable);
+            stmt.execute(createTaskEventsIndex);
+            stmt.execute(createFlowTable);
+            stmt.execute(addTaskSearchColumn);
+            stmt.execute(addProjectSearchColumn);
+            stmt.execute(createTaskSearchIndex);
+            stmt.execute(createProjectSearchIndex);
+            stmt.execute(createProjectSummaryTable);
+            stmt.execute(createUserSummaryTable);
+            stmt.execute(createUserOpenDueTable);
+            stmt.execute(createOpenDueIndex);
+            stmt.execute(createDashboardTable);
+            stmt.execute(seedDashboardRow);
+            
+            try (ResultSet rs = stmt.executeQuery("SELECT EXISTS (SELECT 1 FROM tasks) " +
+                                                  "AND NOT EXISTS (SELECT 1 FROM project_task_summary) " +
+                                                  "AND NOT EXISTS (SELECT 1 FROM user_task_summary)")) {
+                rs.next();
+                if (rs.getBoolean(1)) {
+                    rebuildReportSummaries(lease.connection());
+                }
+            }
+        }
+    }
+    
+    // One-off backfill for databases that already had tasks before the summary tables existed
+    private void rebuildReportSummaries(Connection conn) throws SQLException {
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM project_task_summary");
+            stmt.execute("DELETE FROM user_task_summary");
+            stmt.execute("DELETE FROM user_open_tasks_by_due");
+            stmt.execute("INSERT INTO project_task_summary (project_id, total_tasks, not_started_tasks, " +
+                         "in_progress_tasks, on_hold_tasks, completed_tasks) " +
+                         "SELECT project_id, COUNT(*), COUNT(*) FILTER (WHERE status = 'Not Started'), " +
+                         "COUNT(*) FILTER (WHERE status = 'In Progress'), " +
+                         "COUNT(*) FILTER (WHERE status = 'On Hold'), " +
+                         "COUNT(*) FILTER (WHERE status = 'Completed') " +
+                         "FROM tasks WHERE project_id IS NOT NULL GROUP BY project_id");
+            stmt.execute("INSERT INTO user_task_summary (user_id, total_tasks, completed_tasks) " +
+                         "SELECT assigned_to, COUNT(*), COUNT(*) FILTER (WHERE status = 'Completed') " +
+                         "FROM tasks WHERE assigned_to IS NOT NULL GROUP BY assigned_to");
+            stmt.execute("INSERT INTO user_open_tasks_by_due (user_id, due_date, open_tasks) " +
+                         "SELECT assigned_to, due_date, COUNT(*) FROM tasks " +
+                         "WHERE assigned_to IS NOT NULL AND due_date IS NOT NULL AND status != 'Completed' " +
+                         "GROUP BY assigned_to, due_date");
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+    
+    private <T> T inTransaction(TransactionWork<T> work) throws SQLException {
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+            try {
+                T result = work.execute(lease);
+                conn.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+    
+    // Reads without locking; a later versioned UPDATE only succeeds if the row is still exactly this state,
+    // which is what makes the summary deltas computed from it correct
+    private TaskState readTaskState(int taskId) throws SQLException {
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            PreparedStatement pstmt = lease.prepare(
+                "SELECT project_id, assigned_to, due_date, status, version FROM tasks WHERE task_id = ?");
+            pstmt.setInt(1, taskId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                Date dueDate = rs.getDate("due_date");
+                return new TaskState((Integer) rs.getObject("project_id"), (Integer) rs.getObject("assigned_to"),
+                                     dueDate != null ? dueDate.toLocalDate() : null, rs.getString("status"),
+                                     rs.getInt("version"));
+            }
+        }
+    }
+    
+    // Applies `set` only if the task is still at the version the caller read; otherwise fails fast
+    private void updateTaskVersioned(ConnectionPool.Lease lease, String set, Object value, int taskId, int version)
+            throws SQLException {
+        PreparedStatement pstmt = lease.prepare(
+            "UPDATE tasks SET " + set + ", version = version + 1 WHERE task_id = ? AND version = ?");
+        pstmt.setObject(1, value);
+        pstmt.setInt(2, taskId);
+        pstmt.setInt(3, version);
+        if (pstmt.executeUpdate() == 0) {
+            throw new SQLException("Task " + taskId + " was changed by someone else", TASK_CONFLICT_STATE);
+        }
+    }
+    
+    private static boolean isConflict(SQLException e) {
+        return TASK_CONFLICT_STATE.equals(e.getSQLState());
+    }
+    
+    private void recordTaskEvent(ConnectionPool.Lease lease, int taskId, String type, String oldValue,
+                                 String newValue, int version) throws SQLException {
+        PreparedStatement pstmt = lease.prepare(TASK_EVENT_INSERT);
+        pstmt.setInt(1, taskId);
+        pstmt.setString(2, type);
+        pstmt.setString(3, oldValue);
+        pstmt.setString(4, newValue);
+        pstmt.setInt(5, version);
+        pstmt.executeUpdate();
+    }
+    
+    // Folds one completion into today's flow metrics: lead time from creation, cycle time from the
+    // first move to In Progress. Both come from this task's own events through the (task_id) index.
+    private void recordCompletion(ConnectionPool.Lease lease, int taskId) throws SQLException {
+        PreparedStatement pstmt = lease.prepare(
+            "INSERT INTO task_flow_daily (day, completed_tasks, lead_samples, lead_seconds, " +
+            "cycle_samples, cycle_seconds) " +
+            "SELECT CURRENT_DATE, 1, COUNT(created), " +
+            "COALESCE(EXTRACT(EPOCH FROM now() - created), 0)::BIGINT, COUNT(started), " +
+            "COALESCE(EXTRACT(EPOCH FROM now() - started), 0)::BIGINT FROM (" +
+            "SELECT MIN(occurred_at) FILTER (WHERE event_type = 'CREATED') AS created, " +
+            "MIN(occurred_at) FILTER (WHERE event_type = 'STATUS' AND new_value = 'In Progress') AS started " +
+            "FROM task_events WHERE task_id = ?) e " +
+            "GROUP BY created, started " +
+            "ON CONFLICT (day) DO UPDATE SET " +
+            "completed_tasks = task_flow_daily.completed_tasks + EXCLUDED.completed_tasks, " +
+            "lead_samples = task_flow_daily.lead_samples + EXCLUDED.lead_samples, " +
+            "lead_seconds = task_flow_daily.lead_seconds + EXCLUDED.lead_seconds, " +
+            "cycle_samples = task_flow_daily.cycle_samples + EXCLUDED.cycle_samples, " +
+            "cycle_seconds = task_flow_daily.cycle_seconds + EXCLUDED.cycle_seconds");
+        pstmt.setInt(1, taskId);
+        pstmt.executeUpdate();
+    }
+    
+    // Adds (sign = 1) or removes (sign = -1) one task's contribution to every report summary
+    private void applySummaryDelta(ConnectionPool.Lease lease, TaskState task, int sign) throws SQLException {
+        int completed = task.isCompleted() ? sign : 0;
+        
+        if (task.getProjectId() != null) {
+            PreparedStatement pstmt = lease.prepare(PROJECT_SUMMARY_UPSERT);
+            bindProjectSummary(pstmt, task.getProjectId(), projectSummaryDelta(task, sign));
+            pstmt.executeUpdate();
+        }
+        
+        if (task.getAssignedTo() == null) {
+            return;
+        }
+        PreparedStatement pstmt = lease.prepare(USER_SUMMARY_UPSERT);
+        pstmt.setInt(1, task.getAssignedTo());
+        pstmt.setInt(2, sign);
+        pstmt.setInt(3, completed);
+        pstmt.executeUpdate();
+        
+        if (!task.isCompleted() && task.getDueDate() != null) {
+            pstmt = lease.prepare(USER_OPEN_DUE_UPSERT);
+            pstmt.setInt(1, task.getAssignedTo());
+            pstmt.setDate(2, Date.valueOf(task.getDueDate()));
+            pstmt.setInt(3, sign);
+            pstmt.executeUpdate();
+        }
+    }
+    
+    // Project summary changes in PROJECT_SUMMARY_UPSERT order: the total, then one count per TASK_STATUSES entry
+    private static int[] projectSummaryDelta(TaskState task, int sign) {
+        int[] delta = new int[1 + TASK_STATUSES.length];
+        delta[0] = sign;
+        int index = task.statusIndex();
+        if (index >= 0) {
+            delta[1 + index] = sign;
+        }
+        return delta;
+    }
+    
+    private static void bindProjectSummary(PreparedStatement pstmt, int projectId, int[] delta) throws SQLException {
+        pstmt.setInt(1, projectId);
+        for (int i = 0; i < delta.length; i++) {
+            pstmt.setInt(2 + i, delta[i]);
         }
     }
     
     public static void main(String[] args) {
-        ProjectManager manager = new ProjectManager();
-        manager.run();
+        ConnectionPool pool = null;
+        OverdueWatcher overdueWatcher = null;
+        ReportDashboard dashboard = null;
+        try {
+            pool = openPool(POOL_SIZE);
+            // Alerts reach the local console and every connected session
+            List<PrintStream> alertListeners = new CopyOnWriteArrayList<>(List.of(System.out));
+            overdueWatcher = new OverdueWatcher(pool, alert -> {
+                for (PrintStream listener : alertListeners) {
+                    listener.println("\n[ALERT] " + alert);
+                }
+            });
+            dashboard = new ReportDashboard(pool, DASHBOARD_TTL);
+            ProjectManager manager = new ProjectManager(pool, overdueWatcher, dashboard, new Scanner(System.in));
+            manager.createTablesIfNotExist();
+            
+            // java ProjectManager serve [port] [bind-address]
+            // Loopback only unless a bind address such as 0.0.0.0 is given explicitly
+            if (args.length >= 1 && args[0].equals("serve")) {
+                int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SESSION_PORT;
+                InetAddress bindAddress = args.length > 2 ? InetAddress.getByName(args[2])
+                                                          : InetAddress.getLoopbackAddress();
+                SessionServer server = new SessionServer(pool, overdueWatcher, dashboard, alertListeners,
+                                                         new InetSocketAddress(bindAddress, port));
+                // On Ctrl-C, end the open sessions before the JVM exits; every close() here is idempotent
+                Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+                try {
+                    overdueWatcher.start();
+                    System.out.println("Project Manager sessions on " + bindAddress.getHostAddress() + ":" + port);
+                    server.serve();
+                } finally {
+                    server.close();
+                }
+                return;
+            }
+            
+            // java ProjectManager import <tasks.csv|tasks.json> [batchSize]
+            // java ProjectManager export <tasks.csv|tasks.json>
+            if (args.length >= 2 && args[0].equals("import")) {
+                manager.runImport(Paths.get(args[1]), args.length > 2 ? Integer.parseInt(args[2]) : IMPORT_BATCH_SIZE);
+                return;
+            }
+            if (args.length == 2 && args[0].equals("export")) {
+                manager.runExport(Paths.get(args[1]));
+                return;
+            }
+            
+            overdueWatcher.start();
+            manager.run();
+        } catch (SQLException e) {
+            System.err.println("Error connecting to database: " + e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("Error starting session server: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            if (dashboard != null) dashboard.close();
+            if (overdueWatcher != null) overdueWatcher.close();
+            if (pool != null) pool.close();
+        }
     }
     
     public void run() {
-        System.out.println("Welcome to Project Management CLI");
+        out.println("Welcome to Project Management CLI");
         
         while (true) {
             displayMainMenu();
@@ -80,36 +527,86 @@ public class ProjectManager {
                     generateReports();
                     break;
                 case "5":
-                    System.out.println("Exiting Project Manager. Goodbye!");
-                    try {
-                        if (connection != null) connection.close();
-                    } catch (SQLException e) {
-                        System.err.println("Error closing connection: " + e.getMessage());
-                    }
-                    System.exit(0);
+                    search();
+                    break;
+                case "6":
+                    // Ends this session only; whoever started it owns the shared watcher, dashboard and pool
+                    out.println("Exiting Project Manager. Goodbye!");
+                    return;
                 default:
-                    System.out.println("Invalid choice. Please try again.");
+                    out.println("Invalid choice. Please try again.");
             }
         }
     }
     
     private void displayMainMenu() {
-        System.out.println("\nMain Menu:");
-        System.out.println("1. Manage Users");
-        System.out.println("2. Manage Projects");
-        System.out.println("3. Manage Tasks");
-        System.out.println("4. Generate Reports");
-        System.out.println("5. Exit");
-        System.out.print("Enter your choice (1-5): ");
+        out.println("\nMain Menu:");
+        out.println("1. Manage Users");
+        out.println("2. Manage Projects");
+        out.println("3. Manage Tasks");
+        out.println("4. Generate Reports");
+        out.println("5. Search Tasks and Projects");
+        out.println("6. Exit");
+        out.print("Enter your choice (1-6): ");
+    }
+    
+    private void search() {
+        out.println("\nSearch");
+        out.println("------");
+        out.print("Enter search words (quotes for phrases, - to exclude): ");
+        String terms = scanner.nextLine().trim();
+        if (terms.isEmpty()) {
+            return;
+        }
+        
+        // Matches come from the GIN indexes; only the top rows are ranked against each other and
+        // highlighted, so ts_headline never runs over the full match set
+        String sql = "WITH q AS (SELECT websearch_to_tsquery('english', ?) AS query), " +
+                     "hits AS (" +
+                     "(SELECT 'Task' AS kind, t.task_id AS id, t.task_name AS name, t.description, " +
+                     "ts_rank_cd(t.search_vector, q.query) AS rank FROM tasks t, q " +
+                     "WHERE t.search_vector @@ q.query ORDER BY rank DESC LIMIT ?) " +
+                     "UNION ALL " +
+                     "(SELECT 'Project', p.project_id, p.project_name, p.description, " +
+                     "ts_rank_cd(p.search_vector, q.query) FROM projects p, q " +
+                     "WHERE p.search_vector @@ q.query ORDER BY 5 DESC LIMIT ?) " +
+                     "ORDER BY rank DESC LIMIT ?) " +
+                     "SELECT kind, id, name, rank, ts_headline('english', coalesce(description, ''), q.query, " +
+                     "'MaxWords=12, MinWords=4, StartSel=[, StopSel=]') AS snippet " +
+                     "FROM hits, q ORDER BY rank DESC";
+        
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            PreparedStatement pstmt = lease.prepare(sql);
+            pstmt.setString(1, terms);
+            pstmt.setInt(2, SEARCH_RESULT_LIMIT);
+            pstmt.setInt(3, SEARCH_RESULT_LIMIT);
+            pstmt.setInt(4, SEARCH_RESULT_LIMIT);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.isBeforeFirst()) {
+                    out.println("No matches found.");
+                    return;
+                }
+                
+                out.printf("%-8s %-5s %-30s %-6s %s%n", "Type", "ID", "Name", "Rank", "Match");
+                out.println("--------------------------------------------------------------------------------");
+                
+                while (rs.next()) {
+                    out.printf("%-8s %-5d %-30s %-6.3f %s%n", rs.getString("kind"), rs.getInt("id"),
+                        rs.getString("name"), rs.getDouble("rank"), rs.getString("snippet").replace('\n', ' '));
+                }
+            }
+        } catch (SQLException e) {
+            err.println("Error searching: " + e.getMessage());
+        }
     }
     
     private void manageUsers() {
         while (true) {
-            System.out.println("\nUser Management:");
-            System.out.println("1. Add User");
-            System.out.println("2. View All Users");
-            System.out.println("3. Back to Main Menu");
-            System.out.print("Enter your choice (1-3): ");
+            out.println("\nUser Management:");
+            out.println("1. Add User");
+            out.println("2. View All Users");
+            out.println("3. Back to Main Menu");
+            out.print("Enter your choice (1-3): ");
             
             String choice = scanner.nextLine().trim();
             
@@ -123,71 +620,72 @@ public class ProjectManager {
                 case "3":
                     return;
                 default:
-                    System.out.println("Invalid choice. Please try again.");
+                    out.println("Invalid choice. Please try again.");
             }
         }
     }
     
     private void addUser() {
-        System.out.println("\nAdd New User");
-        System.out.println("------------");
+        out.println("\nAdd New User");
+        out.println("------------");
         
-        System.out.print("Enter username: ");
+        out.print("Enter username: ");
         String username = scanner.nextLine();
         
-        System.out.print("Enter email: ");
+        out.print("Enter email: ");
         String email = scanner.nextLine();
         
         String sql = "INSERT INTO users (username, email) VALUES (?, ?)";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            PreparedStatement pstmt = lease.prepare(sql);
             pstmt.setString(1, username);
             pstmt.setString(2, email);
             pstmt.executeUpdate();
             
-            System.out.println("\nUser added successfully!");
+            out.println("\nUser added successfully!");
         } catch (SQLException e) {
-            System.err.println("Error adding user: " + e.getMessage());
+            err.println("Error adding user: " + e.getMessage());
         }
     }
     
     private void viewAllUsers() {
-        System.out.println("\nAll Users");
-        System.out.println("---------");
+        out.println("\nAll Users");
+        out.println("---------");
         
         String sql = "SELECT user_id, username, email FROM users ORDER BY username";
         
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        try (ConnectionPool.Lease lease = pool.borrow();
+             ResultSet rs = lease.prepare(sql).executeQuery()) {
             
             if (!rs.isBeforeFirst()) {
-                System.out.println("No users found.");
+                out.println("No users found.");
                 return;
             }
             
-            System.out.printf("%-5s %-20s %-30s%n", "ID", "Username", "Email");
-            System.out.println("--------------------------------------------------");
+            out.printf("%-5s %-20s %-30s%n", "ID", "Username", "Email");
+            out.println("--------------------------------------------------");
             
             while (rs.next()) {
                 int userId = rs.getInt("user_id");
                 String username = rs.getString("username");
                 String email = rs.getString("email");
                 
-                System.out.printf("%-5d %-20s %-30s%n", userId, username, email);
+                out.printf("%-5d %-20s %-30s%n", userId, username, email);
             }
         } catch (SQLException e) {
-            System.err.println("Error retrieving users: " + e.getMessage());
+            err.println("Error retrieving users: " + e.getMessage());
         }
     }
     
     private void manageProjects() {
         while (true) {
-            System.out.println("\nProject Management:");
-            System.out.println("1. Create Project");
-            System.out.println("2. View All Projects");
-            System.out.println("3. Update Project Status");
-            System.out.println("4. Back to Main Menu");
-            System.out.print("Enter your choice (1-4): ");
+            out.println("\nProject Management:");
+            out.println("1. Create Project");
+            out.println("2. View All Projects");
+            out.println("3. Update Project Status");
+            out.println("4. Back to Main Menu");
+            out.print("Enter your choice (1-4): ");
             
             String choice = scanner.nextLine().trim();
             
@@ -204,91 +702,166 @@ public class ProjectManager {
                 case "4":
                     return;
                 default:
-                    System.out.println("Invalid choice. Please try again.");
+                    out.println("Invalid choice. Please try again.");
             }
         }
     }
     
     private void createProject() {
-        System.out.println("\nCreate New Project");
-        System.out.println("------------------");
+        out.println("\nCreate New Project");
+        out.println("------------------");
         
-        System.out.print("Enter project name: ");
+        out.print("Enter project name: ");
         String projectName = scanner.nextLine();
         
-        System.out.print("Enter project description: ");
+        out.print("Enter project description: ");
         String description = scanner.nextLine();
         
-        System.out.print("Enter start date (YYYY-MM-DD): ");
+        out.print("Enter start date (YYYY-MM-DD): ");
         LocalDate startDate = LocalDate.parse(scanner.nextLine(), dateFormatter);
         
-        System.out.print("Enter target completion date (YYYY-MM-DD): ");
+        out.print("Enter target completion date (YYYY-MM-DD): ");
         LocalDate targetDate = LocalDate.parse(scanner.nextLine(), dateFormatter);
         
         String sql = "INSERT INTO projects (project_name, description, start_date, target_date) " +
                      "VALUES (?, ?, ?, ?)";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            PreparedStatement pstmt = lease.prepare(sql);
             pstmt.setString(1, projectName);
             pstmt.setString(2, description);
             pstmt.setDate(3, Date.valueOf(startDate));
             pstmt.setDate(4, Date.valueOf(targetDate));
             pstmt.executeUpdate();
             
-            System.out.println("\nProject created successfully!");
+            out.println("\nProject created successfully!");
         } catch (SQLException e) {
-            System.err.println("Error creating project: " + e.getMessage());
+            err.println("Error creating project: " + e.getMessage());
         }
     }
     
     private void viewAllProjects() {
-        System.out.println("\nAll Projects");
-        System.out.println("------------");
-        
-        String sql = "SELECT project_id, project_name, start_date, target_date, status " +
-                     "FROM projects ORDER BY target_date";
+        out.println("\nAll Projects");
+        out.println("------------");
         
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            
-            if (!rs.isBeforeFirst()) {
-                System.out.println("No projects found.");
+        String status = null;
+        PageCursor cursor = PageCursor.FIRST;
+        while (true) {
+            // Each page borrows a connection only while it prints, never while waiting for input
+            PageCursor next;
+            try {
+                next = printProjectPage(status, cursor);
+            } catch (SQLException e) {
+                err.println("Error retrieving projects: " + e.getMessage());
                 return;
             }
-            
-            System.out.printf("%-5s %-30s %-12s %-12s %-15s%n", 
-                "ID", "Project Name", "Start Date", "Target Date", "Status");
-            System.out.println("------------------------------------------------------------------");
-            
-            while (rs.next()) {
-                int projectId = rs.getInt("project_id");
-                String projectName = rs.getString("project_name");
-                Date startDate = rs.getDate("start_date");
-                Date targetDate = rs.getDate("target_date");
-                String status = rs.getString("status");
+            out.print("\nEnter project ID to view details, " + (next != null ? "N for next page, " : "") +
+                             "F to filter by status, or 0 to go back: ");
+            String input = scanner.nextLine().trim();
+            if (input.equalsIgnoreCase("N") && next != null) {
+                cursor = next;
+                continue;
+            }
+            if (input.equalsIgnoreCase("F")) {
+                out.print("Status (blank for any): ");
+                status = blankToNull(scanner.nextLine());
+                cursor = PageCursor.FIRST;
+                continue;
+            }
+            try {
+                int projectId = Integer.parseInt(input);
                 
-                System.out.printf("%-5d %-30s %-12s %-12s %-15s%n", 
-                    projectId, projectName, startDate, targetDate, status);
+                if (projectId != 0) {
+                    viewProjectDetails(projectId);
+                }
+            } catch (NumberFormatException e) {
+                out.println("Invalid input. Returning to project menu.");
+            }
+            return;
+        }
+    }
+    
+    // Prints one page ordered by (target_date, project_id) and returns the cursor for the next page,
+    // or null when there is none. Dated rows come first, then undated ones, each as an index range scan.
+    private PageCursor printProjectPage(String status, PageCursor cursor) throws SQLException {
+        String columns = "SELECT project_id, project_name, start_date, target_date, status FROM projects";
+        String filter = status != null ? " AND status = ?" : "";
+        
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            int printed = 0;
+            PageCursor last = cursor;
+            if (!cursor.isUndated()) {
+                String sql = columns + " WHERE target_date IS NOT NULL" + filter +
+                             (cursor.getLastDate() != null ? " AND (target_date, project_id) > (?, ?)" : "") +
+                             " ORDER BY target_date, project_id LIMIT ?";
+                PreparedStatement pstmt = lease.prepare(sql);
+                int index = 1;
+                if (status != null) pstmt.setString(index++, status);
+                if (cursor.getLastDate() != null) {
+                    pstmt.setDate(index++, Date.valueOf(cursor.getLastDate()));
+                    pstmt.setInt(index++, cursor.getLastId());
+                }
+                pstmt.setInt(index, LIST_PAGE_SIZE + 1);
+                pstmt.setFetchSize(LIST_PAGE_SIZE + 1);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        if (printed == LIST_PAGE_SIZE) {
+                            return last;
+                        }
+                        last = printProjectRow(rs, printed++ == 0);
+                    }
+                }
+                last = PageCursor.undatedAfter(0);
             }
             
-            System.out.print("\nEnter project ID to view details or 0 to go back: ");
-            int projectId = Integer.parseInt(scanner.nextLine());
-            
-            if (projectId != 0) {
-                viewProjectDetails(projectId);
+            String sql = columns + " WHERE target_date IS NULL" + filter +
+                         " AND project_id > ? ORDER BY project_id LIMIT ?";
+            PreparedStatement pstmt = lease.prepare(sql);
+            int index = 1;
+            if (status != null) pstmt.setString(index++, status);
+            pstmt.setInt(index++, last.getLastId());
+            pstmt.setInt(index, LIST_PAGE_SIZE - printed + 1);
+            pstmt.setFetchSize(LIST_PAGE_SIZE + 1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (printed == LIST_PAGE_SIZE) {
+                        return last;
+                    }
+                    last = printProjectRow(rs, printed++ == 0);
+                }
             }
-        } catch (SQLException e) {
-            System.err.println("Error retrieving projects: " + e.getMessage());
-        } catch (NumberFormatException e) {
-            System.out.println("Invalid input. Returning to project menu.");
+            if (printed == 0 && cursor == PageCursor.FIRST) {
+                out.println("No projects found.");
+            }
+            return null;
+        }
+    }
+    
+    private PageCursor printProjectRow(ResultSet rs, boolean first) throws SQLException {
+        if (first) {
+            out.printf("%-5s %-30s %-12s %-12s %-15s%n", 
+                "ID", "Project Name", "Start Date", "Target Date", "Status");
+            out.println("------------------------------------------------------------------");
         }
+        
+        int projectId = rs.getInt("project_id");
+        String projectName = rs.getString("project_name");
+        Date startDate = rs.getDate("start_date");
+        Date targetDate = rs.getDate("target_date");
+        String status = rs.getString("status");
+        
+        out.printf("%-5d %-30s %-12s %-12s %-15s%n", 
+            projectId, projectName, startDate, targetDate, status);
+        return targetDate != null ? PageCursor.after(targetDate.toLocalDate(), projectId)
+                                  : PageCursor.undatedAfter(projectId);
     }
     
     private void viewProjectDetails(int projectId) {
         String sql = "SELECT project_name, description, start_date, target_date, status " +
                      "FROM projects WHERE project_id = ?";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            PreparedStatement pstmt = lease.prepare(sql);
             pstmt.setInt(1, projectId);
             ResultSet rs = pstmt.executeQuery();
             
@@ -299,39 +872,42 @@ public class ProjectManager {
                 Date targetDate = rs.getDate("target_date");
                 String status = rs.getString("status");
                 
-                System.out.println("\nProject Details");
-                System.out.println("---------------");
-                System.out.println("Name: " + projectName);
-                System.out.println("Description: " + description);
-                System.out.println("Start Date: " + startDate);
-                System.out.println("Target Date: " + targetDate);
-                System.out.println("Status: " + status);
-                
-                // Show project tasks
-                System.out.println("\nProject Tasks:");
-                viewTasksForProject(projectId);
+                out.println("\nProject Details");
+                out.println("---------------");
+                out.println("Name: " + projectName);
+                out.println("Description: " + description);
+                out.println("Start Date: " + startDate);
+                out.println("Target Date: " + targetDate);
+                out.println("Status: " + status);
             } else {
-                System.out.println("Project not found with ID: " + projectId);
+                out.println("Project not found with ID: " + projectId);
+                return;
             }
         } catch (SQLException e) {
-            System.err.println("Error retrieving project details: " + e.getMessage());
+            err.println("Error retrieving project details: " + e.getMessage());
+            return;
         }
+        
+        // Show project tasks
+        out.println("\nProject Tasks:");
+        viewTasksForProject(projectId);
+        viewProjectSchedule(projectId);
     }
     
     private void updateProjectStatus() {
         viewAllProjects();
         
-        System.out.print("\nEnter project ID to update status (or 0 to cancel): ");
+        out.print("\nEnter project ID to update status (or 0 to cancel): ");
         int projectId = Integer.parseInt(scanner.nextLine());
         
         if (projectId == 0) return;
         
-        System.out.println("\nAvailable statuses:");
-        System.out.println("1. Not Started");
-        System.out.println("2. In Progress");
-        System.out.println("3. On Hold");
-        System.out.println("4. Completed");
-        System.out.print("Enter new status (1-4): ");
+        out.println("\nAvailable statuses:");
+        out.println("1. Not Started");
+        out.println("2. In Progress");
+        out.println("3. On Hold");
+        out.println("4. Completed");
+        out.print("Enter new status (1-4): ");
         
         String statusChoice = scanner.nextLine();
         String newStatus;
@@ -350,36 +926,40 @@ public class ProjectManager {
                 newStatus = "Completed";
                 break;
             default:
-                System.out.println("Invalid choice. No changes made.");
+                out.println("Invalid choice. No changes made.");
                 return;
         }
         
         String sql = "UPDATE projects SET status = ? WHERE project_id = ?";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            PreparedStatement pstmt = lease.prepare(sql);
             pstmt.setString(1, newStatus);
             pstmt.setInt(2, projectId);
             int rowsAffected = pstmt.executeUpdate();
             
             if (rowsAffected > 0) {
-                System.out.println("\nProject status updated successfully!");
+                out.println("\nProject status updated successfully!");
             } else {
-                System.out.println("\nProject not found with ID: " + projectId);
+                out.println("\nProject not found with ID: " + projectId);
             }
         } catch (SQLException e) {
-            System.err.println("Error updating project status: " + e.getMessage());
+            err.println("Error updating project status: " + e.getMessage());
         }
     }
     
     private void manageTasks() {
         while (true) {
-            System.out.println("\nTask Management:");
-            System.out.println("1. Create Task");
-            System.out.println("2. View All Tasks");
-            System.out.println("3. Update Task Status");
-            System.out.println("4. Assign Task");
-            System.out.println("5. Back to Main Menu");
-            System.out.print("Enter your choice (1-5): ");
+            out.println("\nTask Management:");
+            out.println("1. Create Task");
+            out.println("2. View All Tasks");
+            out.println("3. Update Task Status");
+            out.println("4. Assign Task");
+            out.println("5. Add Task Dependency");
+            out.println("6. Import Tasks (CSV/JSON)");
+            out.println("7. Export Tasks (CSV/JSON)");
+            out.println("8. Back to Main Menu");
+            out.print("Enter your choice (1-8): ");
             
             String choice = scanner.nextLine().trim();
             
@@ -397,33 +977,44 @@ public class ProjectManager {
                     assignTask();
                     break;
                 case "5":
+                    addTaskDependency();
+                    break;
+                case "6":
+                    out.print("Enter path of task file (.csv or .json): ");
+                    runImport(Paths.get(scanner.nextLine().trim()), IMPORT_BATCH_SIZE);
+                    break;
+                case "7":
+                    out.print("Enter path to write tasks to (.csv or .json): ");
+                    runExport(Paths.get(scanner.nextLine().trim()));
+                    break;
+                case "8":
                     return;
                 default:
-                    System.out.println("Invalid choice. Please try again.");
+                    out.println("Invalid choice. Please try again.");
             }
         }
     }
     
     private void createTask() {
-        System.out.println("\nCreate New Task");
-        System.out.println("---------------");
+        out.println("\nCreate New Task");
+        out.println("---------------");
         
         viewAllProjects();
         
-        System.out.print("\nEnter project ID for this task: ");
+        out.print("\nEnter project ID for this task: ");
         int projectId = Integer.parseInt(scanner.nextLine());
         
-        System.out.print("Enter task name: ");
+        out.print("Enter task name: ");
         String taskName = scanner.nextLine();
         
-        System.out.print("Enter task description: ");
+        out.print("Enter task description: ");
         String description = scanner.nextLine();
         
-        System.out.println("Select priority:");
-        System.out.println("1. Low");
-        System.out.println("2. Medium");
-        System.out.println("3. High");
-        System.out.print("Enter choice (1-3): ");
+        out.println("Select priority:");
+        out.println("1. Low");
+        out.println("2. Medium");
+        out.println("3. High");
+        out.print("Enter choice (1-3): ");
         String priorityChoice = scanner.nextLine();
         String priority;
         
@@ -438,97 +1029,256 @@ public class ProjectManager {
                 priority = "High";
                 break;
             default:
-                System.out.println("Invalid choice. Setting to Medium.");
+                out.println("Invalid choice. Setting to Medium.");
                 priority = "Medium";
         }
         
-        System.out.print("Enter due date (YYYY-MM-DD): ");
+        out.print("Enter due date (YYYY-MM-DD): ");
         LocalDate dueDate = LocalDate.parse(scanner.nextLine(), dateFormatter);
         
-        String sql = "INSERT INTO tasks (project_id, task_name, description, priority, due_date) " +
-                     "VALUES (?, ?, ?, ?, ?)";
+        out.print("Enter estimated duration in days (default 1): ");
+        String daysInput = scanner.nextLine().trim();
+        int estimatedDays;
+        try {
+            estimatedDays = daysInput.isEmpty() ? 1 : Math.max(0, Integer.parseInt(daysInput));
+        } catch (NumberFormatException e) {
+            out.println("Invalid duration. Setting to 1 day.");
+            estimatedDays = 1;
+        }
+        int duration = estimatedDays;
+        
+        String sql = "INSERT INTO tasks (project_id, task_name, description, priority, due_date, estimated_days) " +
+                     "VALUES (?, ?, ?, ?, ?, ?) RETURNING task_id";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setInt(1, projectId);
-            pstmt.setString(2, taskName);
-            pstmt.setString(3, description);
-            pstmt.setString(4, priority);
-            pstmt.setDate(5, Date.valueOf(dueDate));
-            pstmt.executeUpdate();
+        try {
+            int taskId = inTransaction(lease -> {
+                PreparedStatement pstmt = lease.prepare(sql);
+                pstmt.setInt(1, projectId);
+                pstmt.setString(2, taskName);
+                pstmt.setString(3, description);
+                pstmt.setString(4, priority);
+                pstmt.setDate(5, Date.valueOf(dueDate));
+                pstmt.setInt(6, duration);
+                int id;
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    rs.next();
+                    id = rs.getInt("task_id");
+                }
+                applySummaryDelta(lease, new TaskState(projectId, null, dueDate, "Not Started", 0), 1);
+                recordTaskEvent(lease, id, "CREATED", null, "Not Started", 0);
+                return id;
+            });
+            overdueWatcher.track(taskId, dueDate);
             
-            System.out.println("\nTask created successfully!");
+            out.println("\nTask created successfully!");
         } catch (SQLException e) {
-            System.err.println("Error creating task: " + e.getMessage());
+            err.println("Error creating task: " + e.getMessage());
         }
     }
     
     private void viewAllTasks() {
-        System.out.println("\nAll Tasks");
-        System.out.println("---------");
-        
-        String sql = "SELECT t.task_id, t.task_name, p.project_name, t.priority, t.due_date, t.status, " +
-                     "u.username AS assigned_to FROM tasks t " +
-                     "LEFT JOIN projects p ON t.project_id = p.project_id " +
-                     "LEFT JOIN users u ON t.assigned_to = u.user_id " +
-                     "ORDER BY t.due_date";
+        out.println("\nAll Tasks");
+        out.println("---------");
         
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            
-            if (!rs.isBeforeFirst()) {
-                System.out.println("No tasks found.");
+        TaskFilter filter = new TaskFilter();
+        PageCursor cursor = PageCursor.FIRST;
+        while (true) {
+            PageCursor next;
+            try {
+                next = printTaskPage(filter, cursor);
+            } catch (SQLException e) {
+                err.println("Error retrieving tasks: " + e.getMessage());
                 return;
             }
-            
-            System.out.printf("%-5s %-25s %-20s %-8s %-12s %-15s %-15s%n", 
-                "ID", "Task Name", "Project", "Priority", "Due Date", "Status", "Assigned To");
-            System.out.println("--------------------------------------------------------------------------------------------");
-            
-            while (rs.next()) {
-                int taskId = rs.getInt("task_id");
-                String taskName = rs.getString("task_name");
-                String projectName = rs.getString("project_name");
-                String priority = rs.getString("priority");
-                Date dueDate = rs.getDate("due_date");
-                String status = rs.getString("status");
-                String assignedTo = rs.getString("assigned_to");
+            out.print("\nEnter task ID to view details, " + (next != null ? "N for next page, " : "") +
+                             "F to filter, or 0 to go back: ");
+            String input = scanner.nextLine().trim();
+            if (input.equalsIgnoreCase("N") && next != null) {
+                cursor = next;
+                continue;
+            }
+            if (input.equalsIgnoreCase("F")) {
+                try {
+                    filter = readTaskFilter();
+                } catch (NumberFormatException | DateTimeParseException e) {
+                    out.println("Invalid filter. Showing all tasks.");
+                    filter = new TaskFilter();
+                }
+                cursor = PageCursor.FIRST;
+                continue;
+            }
+            try {
+                int taskId = Integer.parseInt(input);
                 
-                System.out.printf("%-5d %-25s %-20s %-8s %-12s %-15s %-15s%n", 
-                    taskId, taskName, projectName, priority, dueDate, status, 
-                    assignedTo != null ? assignedTo : "Unassigned");
+                if (taskId != 0) {
+                    viewTaskDetails(taskId);
+                }
+            } catch (NumberFormatException e) {
+                out.println("Invalid input. Returning to task menu.");
+            }
+            return;
+        }
+    }
+    
+    private TaskFilter readTaskFilter() {
+        TaskFilter filter = new TaskFilter();
+        out.println("Leave any field blank to match everything.");
+        out.print("Status: ");
+        filter.status = blankToNull(scanner.nextLine());
+        out.print("Priority: ");
+        filter.priority = blankToNull(scanner.nextLine());
+        out.print("Assignee username: ");
+        filter.assignee = blankToNull(scanner.nextLine());
+        out.print("Project ID: ");
+        String projectId = blankToNull(scanner.nextLine());
+        filter.projectId = projectId != null ? Integer.valueOf(projectId) : null;
+        out.print("Due on or after (YYYY-MM-DD): ");
+        String dueFrom = blankToNull(scanner.nextLine());
+        filter.dueFrom = dueFrom != null ? LocalDate.parse(dueFrom, dateFormatter) : null;
+        out.print("Due on or before (YYYY-MM-DD): ");
+        String dueTo = blankToNull(scanner.nextLine());
+        filter.dueTo = dueTo != null ? LocalDate.parse(dueTo, dateFormatter) : null;
+        return filter;
+    }
+    
+    // Same keyset scheme as printProjectPage over (due_date, task_id). Every filter becomes a SQL
+    // predicate, so the page is served by one of the composite (column, due_date, task_id) indexes.
+    private PageCursor printTaskPage(TaskFilter filter, PageCursor cursor) throws SQLException {
+        String columns = "SELECT t.task_id, t.task_name, p.project_name, t.priority, t.due_date, t.status, " +
+                         "u.username AS assigned_to FROM tasks t " +
+                         "LEFT JOIN projects p ON t.project_id = p.project_id " +
+                         "LEFT JOIN users u ON t.assigned_to = u.user_id";
+        List<Object> params = new ArrayList<>();
+        StringBuilder predicates = new StringBuilder();
+        if (filter.status != null) {
+            predicates.append(" AND t.status = ?");
+            params.add(filter.status);
+        }
+        if (filter.priority != null) {
+            predicates.append(" AND t.priority = ?");
+            params.add(filter.priority);
+        }
+        if (filter.assignee != null) {
+            // Resolved once up front so the planner can use the assigned_to index
+            predicates.append(" AND t.assigned_to = (SELECT user_id FROM users WHERE username = ?)");
+            params.add(filter.assignee);
+        }
+        if (filter.projectId != null) {
+            predicates.append(" AND t.project_id = ?");
+            params.add(filter.projectId);
+        }
+        if (filter.dueFrom != null) {
+            predicates.append(" AND t.due_date >= ?");
+            params.add(Date.valueOf(filter.dueFrom));
+        }
+        if (filter.dueTo != null) {
+            predicates.append(" AND t.due_date <= ?");
+            params.add(Date.valueOf(filter.dueTo));
+        }
+        boolean datesOnly = filter.dueFrom != null || filter.dueTo != null;
+        
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            int printed = 0;
+            PageCursor last = cursor;
+            if (!cursor.isUndated()) {
+                String sql = columns + " WHERE t.due_date IS NOT NULL" + predicates +
+                             (cursor.getLastDate() != null ? " AND (t.due_date, t.task_id) > (?, ?)" : "") +
+                             " ORDER BY t.due_date, t.task_id LIMIT ?";
+                PreparedStatement pstmt = lease.prepare(sql);
+                int index = bindAll(pstmt, params);
+                if (cursor.getLastDate() != null) {
+                    pstmt.setDate(index++, Date.valueOf(cursor.getLastDate()));
+                    pstmt.setInt(index++, cursor.getLastId());
+                }
+                pstmt.setInt(index, LIST_PAGE_SIZE + 1);
+                pstmt.setFetchSize(LIST_PAGE_SIZE + 1);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        if (printed == LIST_PAGE_SIZE) {
+                            return last;
+                        }
+                        last = printTaskRow(rs, printed++ == 0);
+                    }
+                }
+                if (datesOnly) {
+                    if (printed == 0 && cursor == PageCursor.FIRST) {
+                        out.println("No tasks found.");
+                    }
+                    return null;
+                }
+                last = PageCursor.undatedAfter(0);
             }
             
-            System.out.print("\nEnter task ID to view details or 0 to go back: ");
-            int taskId = Integer.parseInt(scanner.nextLine());
-            
-            if (taskId != 0) {
-                viewTaskDetails(taskId);
+            String sql = columns + " WHERE t.due_date IS NULL" + predicates +
+                         " AND t.task_id > ? ORDER BY t.task_id LIMIT ?";
+            PreparedStatement pstmt = lease.prepare(sql);
+            int index = bindAll(pstmt, params);
+            pstmt.setInt(index++, last.getLastId());
+            pstmt.setInt(index, LIST_PAGE_SIZE - printed + 1);
+            pstmt.setFetchSize(LIST_PAGE_SIZE + 1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (printed == LIST_PAGE_SIZE) {
+                        return last;
+                    }
+                    last = printTaskRow(rs, printed++ == 0);
+                }
             }
-        } catch (SQLException e) {
-            System.err.println("Error retrieving tasks: " + e.getMessage());
-        } catch (NumberFormatException e) {
-            System.out.println("Invalid input. Returning to task menu.");
+            if (printed == 0 && cursor == PageCursor.FIRST) {
+                out.println("No tasks found.");
+            }
+            return null;
         }
     }
     
+    private static int bindAll(PreparedStatement pstmt, List<Object> params) throws SQLException {
+        int index = 1;
+        for (Object param : params) {
+            pstmt.setObject(index++, param);
+        }
+        return index;
+    }
+    
+    private PageCursor printTaskRow(ResultSet rs, boolean first) throws SQLException {
+        if (first) {
+            out.printf("%-5s %-25s %-20s %-8s %-12s %-15s %-15s%n", 
+                "ID", "Task Name", "Project", "Priority", "Due Date", "Status", "Assigned To");
+            out.println("--------------------------------------------------------------------------------------------");
+        }
+        
+        int taskId = rs.getInt("task_id");
+        String taskName = rs.getString("task_name");
+        String projectName = rs.getString("project_name");
+        String priority = rs.getString("priority");
+        Date dueDate = rs.getDate("due_date");
+        String status = rs.getString("status");
+        String assignedTo = rs.getString("assigned_to");
+        
+        out.printf("%-5d %-25s %-20s %-8s %-12s %-15s %-15s%n", 
+            taskId, taskName, projectName, priority, dueDate, status, 
+            assignedTo != null ? assignedTo : "Unassigned");
+        return dueDate != null ? PageCursor.after(dueDate.toLocalDate(), taskId) : PageCursor.undatedAfter(taskId);
+    }
+    
     private void viewTasksForProject(int projectId) {
         String sql = "SELECT t.task_id, t.task_name, t.priority, t.due_date, t.status, " +
                      "u.username AS assigned_to FROM tasks t " +
                      "LEFT JOIN users u ON t.assigned_to = u.user_id " +
                      "WHERE t.project_id = ? ORDER BY t.due_date";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            PreparedStatement pstmt = lease.prepare(sql);
             pstmt.setInt(1, projectId);
             ResultSet rs = pstmt.executeQuery();
             
             if (!rs.isBeforeFirst()) {
-                System.out.println("No tasks found for this project.");
+                out.println("No tasks found for this project.");
                 return;
             }
             
-            System.out.printf("%-5s %-25s %-8s %-12s %-15s %-15s%n", 
+            out.printf("%-5s %-25s %-8s %-12s %-15s %-15s%n", 
                 "ID", "Task Name", "Priority", "Due Date", "Status", "Assigned To");
-            System.out.println("----------------------------------------------------------------------");
+            out.println("----------------------------------------------------------------------");
             
             while (rs.next()) {
                 int taskId = rs.getInt("task_id");
@@ -538,12 +1288,12 @@ public class ProjectManager {
                 String status = rs.getString("status");
                 String assignedTo = rs.getString("assigned_to");
                 
-                System.out.printf("%-5d %-25s %-8s %-12s %-15s %-15s%n", 
+                out.printf("%-5d %-25s %-8s %-12s %-15s %-15s%n", 
                     taskId, taskName, priority, dueDate, status, 
                     assignedTo != null ? assignedTo : "Unassigned");
             }
         } catch (SQLException e) {
-            System.err.println("Error retrieving project tasks: " + e.getMessage());
+            err.println("Error retrieving project tasks: " + e.getMessage());
         }
     }
     
@@ -554,7 +1304,8 @@ public class ProjectManager {
                      "LEFT JOIN users u ON t.assigned_to = u.user_id " +
                      "WHERE t.task_id = ?";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            PreparedStatement pstmt = lease.prepare(sql);
             pstmt.setInt(1, taskId);
             ResultSet rs = pstmt.executeQuery();
             
@@ -567,37 +1318,50 @@ public class ProjectManager {
                 String status = rs.getString("status");
                 String assignedTo = rs.getString("assigned_to");
                 
-                System.out.println("\nTask Details");
-                System.out.println("------------");
-                System.out.println("Name: " + taskName);
-                System.out.println("Description: " + description);
-                System.out.println("Project: " + projectName);
-                System.out.println("Priority: " + priority);
-                System.out.println("Due Date: " + dueDate);
-                System.out.println("Status: " + status);
-                System.out.println("Assigned To: " + (assignedTo != null ? assignedTo : "Unassigned"));
+                out.println("\nTask Details");
+                out.println("------------");
+                out.println("Name: " + taskName);
+                out.println("Description: " + description);
+                out.println("Project: " + projectName);
+                out.println("Priority: " + priority);
+                out.println("Due Date: " + dueDate);
+                out.println("Status: " + status);
+                out.println("Assigned To: " + (assignedTo != null ? assignedTo : "Unassigned"));
             } else {
-                System.out.println("Task not found with ID: " + taskId);
+                out.println("Task not found with ID: " + taskId);
             }
         } catch (SQLException e) {
-            System.err.println("Error retrieving task details: " + e.getMessage());
+            err.println("Error retrieving task details: " + e.getMessage());
         }
     }
     
     private void updateTaskStatus() {
         viewAllTasks();
         
-        System.out.print("\nEnter task ID to update status (or 0 to cancel): ");
+        out.print("\nEnter task ID to update status (or 0 to cancel): ");
         int taskId = Integer.parseInt(scanner.nextLine());
         
         if (taskId == 0) return;
         
-        System.out.println("\nAvailable statuses:");
-        System.out.println("1. Not Started");
-        System.out.println("2. In Progress");
-        System.out.println("3. On Hold");
-        System.out.println("4. Completed");
-        System.out.print("Enter new status (1-4): ");
+        TaskState before;
+        try {
+            before = readTaskState(taskId);
+        } catch (SQLException e) {
+            err.println("Error updating task status: " + e.getMessage());
+            return;
+        }
+        if (before == null) {
+            out.println("\nTask not found with ID: " + taskId);
+            return;
+        }
+        out.println("\nCurrent status: " + before.getStatus());
+        
+        out.println("\nAvailable statuses:");
+        out.println("1. Not Started");
+        out.println("2. In Progress");
+        out.println("3. On Hold");
+        out.println("4. Completed");
+        out.print("Enter new status (1-4): ");
         
         String statusChoice = scanner.nextLine();
         String newStatus;
@@ -616,112 +1380,630 @@ public class ProjectManager {
                 newStatus = "Completed";
                 break;
             default:
-                System.out.println("Invalid choice. No changes made.");
+                out.println("Invalid choice. No changes made.");
                 return;
         }
         
-        String sql = "UPDATE tasks SET status = ? WHERE task_id = ?";
+        if (newStatus.equals(before.getStatus())) {
+            out.println("\nTask already has that status. No changes made.");
+            return;
+        }
+        TaskState after = before.withStatus(newStatus);
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, newStatus);
-            pstmt.setInt(2, taskId);
-            int rowsAffected = pstmt.executeUpdate();
+        try {
+            inTransaction(lease -> {
+                updateTaskVersioned(lease, "status = ?", newStatus, taskId, before.getVersion());
+                applySummaryDelta(lease, before, -1);
+                applySummaryDelta(lease, after, 1);
+                recordTaskEvent(lease, taskId, "STATUS", before.getStatus(), newStatus, after.getVersion());
+                if (after.isCompleted()) {
+                    recordCompletion(lease, taskId);
+                }
+                return null;
+            });
             
-            if (rowsAffected > 0) {
-                System.out.println("\nTask status updated successfully!");
-            } else {
-                System.out.println("\nTask not found with ID: " + taskId);
+            // Completed tasks drop out of the watcher lazily; a reopened one has to be watched again
+            if (before.isCompleted() && !after.isCompleted()) {
+                overdueWatcher.track(taskId, before.getDueDate());
             }
+            out.println("\nTask status updated successfully!");
         } catch (SQLException e) {
-            System.err.println("Error updating task status: " + e.getMessage());
+            if (isConflict(e)) {
+                out.println("\nTask was changed by someone else while you were editing. " +
+                                   "No changes made; please review it and try again.");
+            } else {
+                err.println("Error updating task status: " + e.getMessage());
+            }
         }
     }
     
-    private void assignTask() {
-        viewAllTasks();
-        
-        System.out.print("\nEnter task ID to assign (or 0 to cancel): ");
+    private void addTaskDependency() {
+        out.print("\nEnter task ID that is blocked (or 0 to cancel): ");
         int taskId = Integer.parseInt(scanner.nextLine());
         
         if (taskId == 0) return;
         
-        viewAllUsers();
-        
-        System.out.print("\nEnter user ID to assign to this task: ");
-        int userId = Integer.parseInt(scanner.nextLine());
+        out.print("Enter task ID it depends on: ");
+        int dependsOn = Integer.parseInt(scanner.nextLine());
         
-        String sql = "UPDATE tasks SET assigned_to = ? WHERE task_id = ?";
+        // The new edge closes a cycle if the prerequisite already (transitively) depends on the task
+        String cycleSql = "WITH RECURSIVE upstream (task_id) AS (" +
+                          "SELECT depends_on FROM task_dependencies WHERE task_id = ? " +
+                          "UNION SELECT d.depends_on FROM task_dependencies d " +
+                          "JOIN upstream u ON d.task_id = u.task_id) " +
+                          "SELECT EXISTS (SELECT 1 FROM upstream WHERE task_id = ?)";
+        String sql = "INSERT INTO task_dependencies (task_id, depends_on) VALUES (?, ?) ON CONFLICT DO NOTHING";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setInt(1, userId);
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            PreparedStatement pstmt = lease.prepare(cycleSql);
+            pstmt.setInt(1, dependsOn);
             pstmt.setInt(2, taskId);
-            int rowsAffected = pstmt.executeUpdate();
-            
-            if (rowsAffected > 0) {
-                System.out.println("\nTask assigned successfully!");
-            } else {
-                System.out.println("\nFailed to assign task. Task or user may not exist.");
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                if (taskId == dependsOn || rs.getBoolean(1)) {
+                    out.println("\nThat dependency would create a cycle. No changes made.");
+                    return;
+                }
             }
+            
+            pstmt = lease.prepare(sql);
+            pstmt.setInt(1, taskId);
+            pstmt.setInt(2, dependsOn);
+            pstmt.executeUpdate();
+            
+            out.println("\nDependency added successfully!");
         } catch (SQLException e) {
-            System.err.println("Error assigning task: " + e.getMessage());
+            err.println("Error adding dependency: " + e.getMessage());
         }
     }
     
-    private void generateReports() {
-        while (true) {
-            System.out.println("\nReport Generation:");
-            System.out.println("1. Project Summary");
-            System.out.println("2. Task Summary by Status");
-            System.out.println("3. Overdue Tasks");
-            System.out.println("4. User Workload");
-            System.out.println("5. Back to Main Menu");
-            System.out.print("Enter your choice (1-5): ");
-            
-            String choice = scanner.nextLine().trim();
-            
-            switch (choice) {
-                case "1":
-                    generateProjectSummary();
-                    break;
-                case "2":
-                    generateTaskStatusReport();
-                    break;
-                case "3":
-                    generateOverdueTasksReport();
-                    break;
-                case "4":
-                    generateUserWorkloadReport();
-                    break;
-                case "5":
-                    return;
-                default:
-                    System.out.println("Invalid choice. Please try again.");
-            }
+    private void viewProjectSchedule(int projectId) {
+        TaskGraph graph;
+        try {
+            graph = loadTaskGraph(projectId);
+        } catch (SQLException e) {
+            err.println("Error building project schedule: " + e.getMessage());
+            return;
+        }
+        if (graph.size() == 0) {
+            return;
+        }
+        
+        out.println("\nSchedule (remaining work):");
+        if (!graph.schedule()) {
+            out.println("Dependency cycle between tasks: " + graph.cycleTaskIds());
+            return;
+        }
+        
+        LocalDate today = LocalDate.now();
+        out.println("Critical path length: " + graph.projectLength() + " day(s)");
+        out.println("Estimated completion: " + today.plusDays(graph.projectLength()));
+        
+        out.println("Critical tasks:");
+        out.printf("%-5s %-12s %-12s %-6s%n", "ID", "Earliest", "Latest", "Slack");
+        out.println("-----------------------------------");
+        int[] critical = graph.criticalPath();
+        for (int k = 0; k < Math.min(critical.length, CRITICAL_PATH_DISPLAY_LIMIT); k++) {
+            int i = critical[k];
+            out.printf("%-5d %-12s %-12s %-6d%n", graph.taskId(i),
+                today.plusDays(graph.earliestStart(i)), today.plusDays(graph.latestStart(i)), graph.slack(i));
+        }
+        if (critical.length > CRITICAL_PATH_DISPLAY_LIMIT) {
+            out.println("... and " + (critical.length - CRITICAL_PATH_DISPLAY_LIMIT) + " more critical task(s)");
         }
     }
     
-    private void generateProjectSummary() {
-        System.out.println("\nProject Summary Report");
-        System.out.println("----------------------");
-        
-        String sql = "SELECT p.project_id, p.project_name, p.status, p.target_date, " +
-                     "COUNT(t.task_id) AS total_tasks, " +
-                     "SUM(CASE WHEN t.status = 'Completed' THEN 1 ELSE 0 END) AS completed_tasks " +
-                     "FROM projects p LEFT JOIN tasks t ON p.project_id = t.project_id " +
-                     "GROUP BY p.project_id, p.project_name, p.status, p.target_date " +
-                     "ORDER BY p.target_date";
+    // Reads a project's tasks and intra-project dependencies into int-indexed arrays
+    private TaskGraph loadTaskGraph(int projectId) throws SQLException {
+        String tasksSql = "SELECT task_id, CASE WHEN status = 'Completed' THEN 0 ELSE estimated_days END AS days " +
+                          "FROM tasks WHERE project_id = ? ORDER BY task_id";
+        String edgesSql = "SELECT d.depends_on, d.task_id FROM task_dependencies d " +
+                          "JOIN tasks t ON t.task_id = d.task_id WHERE t.project_id = ?";
         
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            int[] ids = new int[64];
+            int[] days = new int[64];
+            int n = 0;
+            PreparedStatement pstmt = lease.prepare(tasksSql);
+            pstmt.setInt(1, projectId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (n == ids.length) {
+                        ids = Arrays.copyOf(ids, n * 2);
+                        days = Arrays.copyOf(days, n * 2);
+                    }
+                    ids[n] = rs.getInt("task_id");
+                    days[n] = rs.getInt("days");
+                    n++;
+                }
+            }
             
-            if (!rs.isBeforeFirst()) {
-                System.out.println("No projects found.");
+            int[] from = new int[64];
+            int[] to = new int[64];
+            int m = 0;
+            pstmt = lease.prepare(edgesSql);
+            pstmt.setInt(1, projectId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (m == from.length) {
+                        from = Arrays.copyOf(from, m * 2);
+                        to = Arrays.copyOf(to, m * 2);
+                    }
+                    from[m] = rs.getInt("depends_on");
+                    to[m] = rs.getInt("task_id");
+                    m++;
+                }
+            }
+            return new TaskGraph(Arrays.copyOf(ids, n), Arrays.copyOf(days, n), from, to, m);
+        }
+    }
+    
+    private void runImport(Path input, int batchSize) {
+        try {
+            long started = System.nanoTime();
+            ImportResult result = importTasks(input, batchSize);
+            out.printf("Imported %d tasks (%d rows rejected) in %d ms.%n",
+                result.getImported(), result.getRejected(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (IOException e) {
+            err.println("Error reading task file: " + e.getMessage());
+        } catch (SQLException e) {
+            err.println("Error importing tasks: " + e.getMessage());
+        }
+    }
+    
+    private void runExport(Path output) {
+        try {
+            long started = System.nanoTime();
+            int exported = exportTasks(output);
+            out.printf("Exported %d tasks to %s in %d ms.%n", exported, output,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (IOException e) {
+            err.println("Error writing task file: " + e.getMessage());
+        } catch (SQLException e) {
+            err.println("Error exporting tasks: " + e.getMessage());
+        }
+    }
+    
+    // Streams a CSV or JSON task file (same columns as exportTasks) into tasks in batched chunks,
+    // one transaction per chunk. Project names and usernames are resolved once each and cached.
+    public ImportResult importTasks(Path input, int batchSize) throws IOException, SQLException {
+        String insertSql = "INSERT INTO tasks (project_id, task_name, description, status, priority, " +
+                           "due_date, estimated_days, assigned_to) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        Map<String, Integer> projectIds = new HashMap<>();
+        Map<String, Integer> userIds = new HashMap<>();
+        List<ImportedTask> chunk = new ArrayList<>(batchSize);
+        int imported = 0;
+        int rejected = 0;
+        
+        try (BufferedReader reader = Files.newBufferedReader(input);
+             ConnectionPool.Lease lease = pool.borrow()) {
+            Connection conn = lease.connection();
+            TaskRecordReader records = isJson(input) ? new JsonTaskReader(reader) : new CsvTaskReader(reader);
+            conn.setAutoCommit(false);
+            
+            try (PreparedStatement pstmt = conn.prepareStatement(insertSql, new String[] {"task_id"})) {
+                Map<String, String> record;
+                int recordNumber = 0;
+                while ((record = records.next()) != null) {
+                    recordNumber++;
+                    ImportedTask task;
+                    try {
+                        task = parseImportedTask(lease, record, projectIds, userIds);
+                    } catch (IllegalArgumentException | DateTimeParseException e) {
+                        err.println("Record " + recordNumber + " rejected: " + e.getMessage());
+                        rejected++;
+                        continue;
+                    }
+                    chunk.add(task);
+                    if (chunk.size() == batchSize) {
+                        imported += writeImportChunk(lease, pstmt, chunk);
+                        chunk.clear();
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    imported += writeImportChunk(lease, pstmt, chunk);
+                }
+            } catch (SQLException | IOException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        return new ImportResult(imported, rejected);
+    }
+    
+    private ImportedTask parseImportedTask(ConnectionPool.Lease lease, Map<String, String> record,
+                                           Map<String, Integer> projectIds, Map<String, Integer> userIds)
+            throws SQLException {
+        String taskName = record.getOrDefault("task_name", "").trim();
+        if (taskName.isEmpty() || taskName.length() > 100) {
+            throw new IllegalArgumentException("task_name is required and at most 100 characters");
+        }
+        
+        String project = record.getOrDefault("project", "").trim();
+        Integer projectId = projectIds.get(project);
+        if (projectId == null) {
+            projectId = lookupId(lease, "SELECT project_id FROM projects WHERE project_name = ? " +
+                                        "ORDER BY project_id LIMIT 1", project);
+            if (projectId == null) {
+                throw new IllegalArgumentException("unknown project '" + project + "'");
+            }
+            projectIds.put(project, projectId);
+        }
+        
+        String assignee = blankToNull(record.get("assignee"));
+        Integer assignedTo = null;
+        if (assignee != null) {
+            assignedTo = userIds.get(assignee);
+            if (assignedTo == null) {
+                assignedTo = lookupId(lease, "SELECT user_id FROM users WHERE username = ?", assignee);
+                if (assignedTo == null) {
+                    throw new IllegalArgumentException("unknown assignee '" + assignee + "'");
+                }
+                userIds.put(assignee, assignedTo);
+            }
+        }
+        
+        // Everything the INSERT could refuse is checked here, so a bad row is skipped instead of
+        // failing its whole chunk after earlier chunks have committed
+        String status = blankToNull(record.get("status"));
+        if (status != null) {
+            String canonical = null;
+            for (String known : TASK_STATUSES) {
+                if (known.equalsIgnoreCase(status)) {
+                    canonical = known;
+                }
+            }
+            if (canonical == null) {
+                throw new IllegalArgumentException("unknown status '" + status + "', expected one of " +
+                                                   String.join(", ", TASK_STATUSES));
+            }
+            status = canonical;
+        }
+        
+        String priority = blankToNull(record.get("priority"));
+        if (priority != null && priority.length() > 10) {
+            throw new IllegalArgumentException("priority is at most 10 characters");
+        }
+        
+        String estimatedDays = blankToNull(record.get("estimated_days"));
+        int days = 1;
+        if (estimatedDays != null) {
+            try {
+                days = Integer.parseInt(estimatedDays);
+            } catch (NumberFormatException e) {
+                days = -1;
+            }
+            if (days < 0) {
+                throw new IllegalArgumentException("estimated_days must be a whole number of days, 0 or more");
+            }
+        }
+        
+        String dueDate = blankToNull(record.get("due_date"));
+        return new ImportedTask(projectId, taskName, blankToNull(record.get("description")),
+            status != null ? status : "Not Started", priority != null ? priority : "Medium",
+            dueDate != null ? LocalDate.parse(dueDate, dateFormatter) : null, days, assignedTo);
+    }
+    
+    private static Integer lookupId(ConnectionPool.Lease lease, String sql, String key) throws SQLException {
+        PreparedStatement pstmt = lease.prepare(sql);
+        pstmt.setString(1, key);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : null;
+        }
+    }
+    
+    private static String blankToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+    
+    private static boolean isJson(Path path) {
+        return path.getFileName().toString().toLowerCase().endsWith(".json");
+    }
+    
+    private int writeImportChunk(ConnectionPool.Lease lease, PreparedStatement pstmt, List<ImportedTask> chunk)
+            throws SQLException {
+        SummaryDeltas deltas = new SummaryDeltas();
+        for (ImportedTask task : chunk) {
+            pstmt.setInt(1, task.projectId);
+            pstmt.setString(2, task.taskName);
+            pstmt.setString(3, task.description);
+            pstmt.setString(4, task.status);
+            pstmt.setString(5, task.priority);
+            pstmt.setDate(6, task.dueDate != null ? Date.valueOf(task.dueDate) : null);
+            pstmt.setInt(7, task.estimatedDays);
+            pstmt.setObject(8, task.assignedTo, Types.INTEGER);
+            pstmt.addBatch();
+            deltas.add(new TaskState(task.projectId, task.assignedTo, task.dueDate, task.status, 0), 1);
+        }
+        pstmt.executeBatch();
+        
+        int[] taskIds = new int[chunk.size()];
+        try (ResultSet keys = pstmt.getGeneratedKeys()) {
+            for (int i = 0; i < taskIds.length && keys.next(); i++) {
+                taskIds[i] = keys.getInt(1);
+            }
+        }
+        deltas.apply(lease);
+        
+        PreparedStatement events = lease.prepare(TASK_EVENT_INSERT);
+        for (int i = 0; i < taskIds.length; i++) {
+            events.setInt(1, taskIds[i]);
+            events.setString(2, "CREATED");
+            events.setString(3, null);
+            events.setString(4, chunk.get(i).status);
+            events.setInt(5, 0);
+            events.addBatch();
+        }
+        events.executeBatch();
+        lease.connection().commit();
+        
+        for (int i = 0; i < taskIds.length; i++) {
+            ImportedTask task = chunk.get(i);
+            if (taskIds[i] != 0 && !"Completed".equals(task.status)) {
+                overdueWatcher.track(taskIds[i], task.dueDate);
+            }
+        }
+        return chunk.size();
+    }
+    
+    // Streams every task through a server-side cursor, so memory stays flat however many tasks there are
+    public int exportTasks(Path output) throws IOException, SQLException {
+        String sql = "SELECT p.project_name, t.task_name, t.description, t.status, t.priority, t.due_date, " +
+                     "t.estimated_days, u.username FROM tasks t " +
+                     "LEFT JOIN projects p ON t.project_id = p.project_id " +
+                     "LEFT JOIN users u ON t.assigned_to = u.user_id " +
+                     "ORDER BY t.task_id";
+        boolean json = isJson(output);
+        int exported = 0;
+        
+        try (BufferedWriter writer = Files.newBufferedWriter(output);
+             ConnectionPool.Lease lease = pool.borrow()) {
+            // PostgreSQL only honours the fetch size inside a transaction
+            lease.connection().setAutoCommit(false);
+            PreparedStatement pstmt = lease.prepare(sql);
+            pstmt.setFetchSize(EXPORT_FETCH_SIZE);
+            
+            writer.write(json ? "[" : String.join(",", TASK_FILE_COLUMNS));
+            writer.newLine();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Date dueDate = rs.getDate("due_date");
+                    String[] values = {
+                        rs.getString("project_name"), rs.getString("task_name"), rs.getString("description"),
+                        rs.getString("status"), rs.getString("priority"),
+                        dueDate != null ? dueDate.toString() : null,
+                        String.valueOf(rs.getInt("estimated_days")), rs.getString("username")
+                    };
+                    if (json) {
+                        writer.write(exported == 0 ? "" : ",");
+                        writer.newLine();
+                        writer.write(toJsonObject(values));
+                    } else {
+                        writer.write(toCsvRow(values));
+                        writer.newLine();
+                    }
+                    exported++;
+                }
+            }
+            if (json) {
+                writer.newLine();
+                writer.write("]");
+                writer.newLine();
+            }
+        }
+        return exported;
+    }
+    
+    private static String toCsvRow(String[] values) {
+        StringBuilder row = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) row.append(',');
+            String value = values[i];
+            if (value == null) continue;
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                row.append('"').append(value.replace("\"", "\"\"")).append('"');
+            } else {
+                row.append(value);
+            }
+        }
+        return row.toString();
+    }
+    
+    private static String toJsonObject(String[] values) {
+        StringBuilder object = new StringBuilder("{");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) object.append(',');
+            object.append('"').append(TASK_FILE_COLUMNS[i]).append("\":");
+            if (values[i] == null) {
+                object.append("null");
+                continue;
+            }
+            object.append('"');
+            for (char c : values[i].toCharArray()) {
+                switch (c) {
+                    case '"': object.append("\\\""); break;
+                    case '\\': object.append("\\\\"); break;
+                    case '\n': object.append("\\n"); break;
+                    case '\r': object.append("\\r"); break;
+                    case '\t': object.append("\\t"); break;
+                    default:
+                        if (c < 0x20) {
+                            object.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            object.append(c);
+                        }
+                }
+            }
+            object.append('"');
+        }
+        return object.append('}').toString();
+    }
+    
+    private void assignTask() {
+        viewAllTasks();
+        
+        out.print("\nEnter task ID to assign (or 0 to cancel): ");
+        int taskId = Integer.parseInt(scanner.nextLine());
+        
+        if (taskId == 0) return;
+        
+        TaskState before;
+        try {
+            before = readTaskState(taskId);
+        } catch (SQLException e) {
+            err.println("Error assigning task: " + e.getMessage());
+            return;
+        }
+        if (before == null) {
+            out.println("\nFailed to assign task. Task or user may not exist.");
+            return;
+        }
+        
+        viewAllUsers();
+        
+        out.print("\nEnter user ID to assign to this task: ");
+        int userId = Integer.parseInt(scanner.nextLine());
+        
+        TaskState after = before.withAssignedTo(userId);
+        
+        try {
+            inTransaction(lease -> {
+                updateTaskVersioned(lease, "assigned_to = ?", userId, taskId, before.getVersion());
+                applySummaryDelta(lease, before, -1);
+                applySummaryDelta(lease, after, 1);
+                recordTaskEvent(lease, taskId, "ASSIGNED",
+                    before.getAssignedTo() != null ? String.valueOf(before.getAssignedTo()) : null,
+                    String.valueOf(userId), after.getVersion());
+                return null;
+            });
+            
+            out.println("\nTask assigned successfully!");
+        } catch (SQLException e) {
+            if (isConflict(e)) {
+                out.println("\nTask was changed by someone else while you were editing. " +
+                                   "No changes made; please review it and try again.");
+            } else if ("23503".equals(e.getSQLState())) {
+                out.println("\nFailed to assign task. Task or user may not exist.");
+            } else {
+                err.println("Error assigning task: " + e.getMessage());
+            }
+        }
+    }
+    
+    private void generateReports() {
+        while (true) {
+            out.println("\nReport Generation:");
+            out.println("1. Project Summary");
+            out.println("2. Task Summary by Status");
+            out.println("3. Overdue Tasks");
+            out.println("4. User Workload");
+            out.println("5. Flow Metrics (Last 30 Days)");
+            out.println("6. Run All (Dashboard)");
+            out.println("7. Back to Main Menu");
+            out.print("Enter your choice (1-7): ");
+            
+            String choice = scanner.nextLine().trim();
+            
+            switch (choice) {
+                case "1":
+                    printReport(this::generateProjectSummary, "project summary");
+                    break;
+                case "2":
+                    printReport(this::generateTaskStatusReport, "task status report");
+                    break;
+                case "3":
+                    printReport(this::generateOverdueTasksReport, "overdue tasks report");
+                    break;
+                case "4":
+                    printReport(this::generateUserWorkloadReport, "user workload report");
+                    break;
+                case "5":
+                    generateFlowMetricsReport();
+                    break;
+                case "6":
+                    viewDashboard();
+                    break;
+                case "7":
+                    return;
+                default:
+                    out.println("Invalid choice. Please try again.");
+            }
+        }
+    }
+    
+    private void viewDashboard() {
+        try {
+            DashboardSnapshot snapshot = dashboard.get(this::buildDashboard);
+            out.print(snapshot.getText());
+            out.println("\nDashboard as of " + snapshot.getBuiltAt().withNano(0) +
+                               " (refreshed at most every " + dashboard.getTtl().getSeconds() + "s)");
+        } catch (SQLException e) {
+            err.println("Error building dashboard: " + e.getMessage());
+        }
+    }
+    
+    // Runs the four reports at once, each on its own pooled connection, and stitches their output
+    // together in menu order
+    private String buildDashboard(ExecutorService workers) throws SQLException {
+        List<Callable<String>> reports = List.of(
+            () -> capture(this::generateProjectSummary),
+            () -> capture(this::generateTaskStatusReport),
+            () -> capture(this::generateOverdueTasksReport),
+            () -> capture(this::generateUserWorkloadReport));
+        
+        StringBuilder text = new StringBuilder();
+        try {
+            for (Future<String> report : workers.invokeAll(reports)) {
+                text.append(report.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while building dashboard", e);
+        } catch (ExecutionException e) {
+            throw new SQLException("Report failed: " + e.getCause().getMessage(), e.getCause());
+        }
+        return text.toString();
+    }
+    
+    private void printReport(ReportWriter report, String name) {
+        try {
+            report.write(out);
+        } catch (SQLException e) {
+            err.println("Error generating " + name + ": " + e.getMessage());
+        }
+    }
+    
+    // A failing report throws out of here, so buildDashboard fails and nothing partial gets cached
+    private static String capture(ReportWriter report) throws SQLException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (PrintStream out = new PrintStream(buffer, true, StandardCharsets.UTF_8)) {
+            report.write(out);
+        }
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+    
+    private void generateProjectSummary(PrintStream out) throws SQLException {
+        out.println("\nProject Summary Report");
+        out.println("----------------------");
+        
+        String sql = "SELECT p.project_id, p.project_name, p.status, p.target_date, " +
+                     "COALESCE(s.total_tasks, 0) AS total_tasks, " +
+                     "COALESCE(s.completed_tasks, 0) AS completed_tasks " +
+                     "FROM projects p LEFT JOIN project_task_summary s ON p.project_id = s.project_id " +
+                     "ORDER BY p.target_date";
+        
+        try (ConnectionPool.Lease lease = pool.borrow();
+             ResultSet rs = lease.prepare(sql).executeQuery()) {
+            
+            if (!rs.isBeforeFirst()) {
+                out.println("No projects found.");
                 return;
             }
             
-            System.out.printf("%-5s %-30s %-15s %-12s %-15s %-15s%n", 
+            out.printf("%-5s %-30s %-15s %-12s %-15s %-15s%n", 
                 "ID", "Project Name", "Status", "Target Date", "Total Tasks", "Completed Tasks");
-            System.out.println("----------------------------------------------------------------------------------------");
+            out.println("----------------------------------------------------------------------------------------");
             
             while (rs.next()) {
                 int projectId = rs.getInt("project_id");
@@ -731,45 +2013,52 @@ public class ProjectManager {
                 int totalTasks = rs.getInt("total_tasks");
                 int completedTasks = rs.getInt("completed_tasks");
                 
-                System.out.printf("%-5d %-30s %-15s %-12s %-15d %-15d%n", 
+                out.printf("%-5d %-30s %-15s %-12s %-15d %-15d%n", 
                     projectId, projectName, status, targetDate, totalTasks, completedTasks);
             }
-        } catch (SQLException e) {
-            System.err.println("Error generating project summary: " + e.getMessage());
         }
     }
     
-    private void generateTaskStatusReport() {
-        System.out.println("\nTask Status Report");
-        System.out.println("------------------");
+    // Answered from the per-project status counts rather than a GROUP BY over every task
+    private void generateTaskStatusReport(PrintStream out) throws SQLException {
+        out.println("\nTask Status Report");
+        out.println("------------------");
         
-        String sql = "SELECT status, COUNT(*) AS task_count FROM tasks GROUP BY status";
+        StringBuilder sql = new StringBuilder("SELECT COALESCE(SUM(total_tasks), 0) AS total_tasks");
+        for (String column : STATUS_COLUMNS) {
+            sql.append(", COALESCE(SUM(").append(column).append("), 0) AS ").append(column);
+        }
+        sql.append(" FROM project_task_summary");
         
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            
-            if (!rs.isBeforeFirst()) {
-                System.out.println("No tasks found.");
+        try (ConnectionPool.Lease lease = pool.borrow();
+             ResultSet rs = lease.prepare(sql.toString()).executeQuery()) {
+            rs.next();
+            long total = rs.getLong("total_tasks");
+            if (total == 0) {
+                out.println("No tasks found.");
                 return;
             }
             
-            System.out.printf("%-15s %-10s%n", "Status", "Task Count");
-            System.out.println("---------------------");
+            out.printf("%-15s %-10s%n", "Status", "Task Count");
+            out.println("---------------------");
             
-            while (rs.next()) {
-                String status = rs.getString("status");
-                int taskCount = rs.getInt("task_count");
-                
-                System.out.printf("%-15s %-10d%n", status, taskCount);
+            long other = total;
+            for (int i = 0; i < TASK_STATUSES.length; i++) {
+                long taskCount = rs.getLong(STATUS_COLUMNS[i]);
+                other -= taskCount;
+                if (taskCount > 0) {
+                    out.printf("%-15s %-10d%n", TASK_STATUSES[i], taskCount);
+                }
+            }
+            if (other > 0) {
+                out.printf("%-15s %-10d%n", "Other", other);
             }
-        } catch (SQLException e) {
-            System.err.println("Error generating task status report: " + e.getMessage());
         }
     }
     
-    private void generateOverdueTasksReport() {
-        System.out.println("\nOverdue Tasks Report");
-        System.out.println("--------------------");
+    private void generateOverdueTasksReport(PrintStream out) throws SQLException {
+        out.println("\nOverdue Tasks Report");
+        out.println("--------------------");
         
         String sql = "SELECT t.task_id, t.task_name, p.project_name, t.due_date, t.status, " +
                      "u.username AS assigned_to FROM tasks t " +
@@ -778,17 +2067,17 @@ public class ProjectManager {
                      "WHERE t.due_date < CURRENT_DATE AND t.status != 'Completed' " +
                      "ORDER BY t.due_date";
         
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        try (ConnectionPool.Lease lease = pool.borrow();
+             ResultSet rs = lease.prepare(sql).executeQuery()) {
             
             if (!rs.isBeforeFirst()) {
-                System.out.println("No overdue tasks found.");
+                out.println("No overdue tasks found.");
                 return;
             }
             
-            System.out.printf("%-5s %-25s %-20s %-12s %-15s %-15s%n", 
+            out.printf("%-5s %-25s %-20s %-12s %-15s %-15s%n", 
                 "ID", "Task Name", "Project", "Due Date", "Status", "Assigned To");
-            System.out.println("----------------------------------------------------------------------");
+            out.println("----------------------------------------------------------------------");
             
             while (rs.next()) {
                 int taskId = rs.getInt("task_id");
@@ -798,38 +2087,36 @@ public class ProjectManager {
                 String status = rs.getString("status");
                 String assignedTo = rs.getString("assigned_to");
                 
-                System.out.printf("%-5d %-25s %-20s %-12s %-15s %-15s%n", 
+                out.printf("%-5d %-25s %-20s %-12s %-15s %-15s%n", 
                     taskId, taskName, projectName, dueDate, status, 
                     assignedTo != null ? assignedTo : "Unassigned");
             }
-        } catch (SQLException e) {
-            System.err.println("Error generating overdue tasks report: " + e.getMessage());
         }
     }
     
-    private void generateUserWorkloadReport() {
-        System.out.println("\nUser Workload Report");
-        System.out.println("--------------------");
+    private void generateUserWorkloadReport(PrintStream out) throws SQLException {
+        out.println("\nUser Workload Report");
+        out.println("--------------------");
         
         String sql = "SELECT u.user_id, u.username, " +
-                     "COUNT(t.task_id) AS total_tasks, " +
-                     "SUM(CASE WHEN t.status = 'Completed' THEN 1 ELSE 0 END) AS completed_tasks, " +
-                     "SUM(CASE WHEN t.due_date < CURRENT_DATE AND t.status != 'Completed' THEN 1 ELSE 0 END) AS overdue_tasks " +
-                     "FROM users u LEFT JOIN tasks t ON u.user_id = t.assigned_to " +
-                     "GROUP BY u.user_id, u.username " +
+                     "COALESCE(s.total_tasks, 0) AS total_tasks, " +
+                     "COALESCE(s.completed_tasks, 0) AS completed_tasks, " +
+                     "COALESCE((SELECT SUM(d.open_tasks) FROM user_open_tasks_by_due d " +
+                     "WHERE d.user_id = u.user_id AND d.due_date < CURRENT_DATE), 0) AS overdue_tasks " +
+                     "FROM users u LEFT JOIN user_task_summary s ON u.user_id = s.user_id " +
                      "ORDER BY total_tasks DESC";
         
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        try (ConnectionPool.Lease lease = pool.borrow();
+             ResultSet rs = lease.prepare(sql).executeQuery()) {
             
             if (!rs.isBeforeFirst()) {
-                System.out.println("No users found.");
+                out.println("No users found.");
                 return;
             }
             
-            System.out.printf("%-5s %-20s %-15s %-15s %-15s%n", 
+            out.printf("%-5s %-20s %-15s %-15s %-15s%n", 
                 "ID", "Username", "Total Tasks", "Completed", "Overdue");
-            System.out.println("------------------------------------------------------------");
+            out.println("------------------------------------------------------------");
             
             while (rs.next()) {
                 int userId = rs.getInt("user_id");
@@ -838,11 +2125,1106 @@ public class ProjectManager {
                 int completedTasks = rs.getInt("completed_tasks");
                 int overdueTasks = rs.getInt("overdue_tasks");
                 
-                System.out.printf("%-5d %-20s %-15d %-15d %-15d%n", 
+                out.printf("%-5d %-20s %-15d %-15d %-15d%n", 
                     userId, username, totalTasks, completedTasks, overdueTasks);
             }
+        }
+    }
+    
+    private void generateFlowMetricsReport() {
+        out.println("\nFlow Metrics Report (Last 30 Days)");
+        out.println("----------------------------------");
+        
+        String sql = "SELECT day, completed_tasks, " +
+                     "lead_seconds / NULLIF(lead_samples, 0) / 86400.0 AS avg_lead_days, " +
+                     "cycle_seconds / NULLIF(cycle_samples, 0) / 86400.0 AS avg_cycle_days " +
+                     "FROM task_flow_daily WHERE day > CURRENT_DATE - 30 ORDER BY day";
+        
+        try (ConnectionPool.Lease lease = pool.borrow();
+             ResultSet rs = lease.prepare(sql).executeQuery()) {
+            
+            if (!rs.isBeforeFirst()) {
+                out.println("No tasks completed in the last 30 days.");
+                return;
+            }
+            
+            out.printf("%-12s %-12s %-16s %-16s%n", "Day", "Completed", "Avg Lead (days)", "Avg Cycle (days)");
+            out.println("----------------------------------------------------------");
+            
+            int totalCompleted = 0;
+            while (rs.next()) {
+                Date day = rs.getDate("day");
+                int completed = rs.getInt("completed_tasks");
+                double avgLead = rs.getDouble("avg_lead_days");
+                String lead = rs.wasNull() ? "-" : String.format("%.1f", avgLead);
+                double avgCycle = rs.getDouble("avg_cycle_days");
+                String cycle = rs.wasNull() ? "-" : String.format("%.1f", avgCycle);
+                totalCompleted += completed;
+                
+                out.printf("%-12s %-12d %-16s %-16s%n", day, completed, lead, cycle);
+            }
+            out.printf("%nThroughput: %d tasks in 30 days (%.1f per day)%n", totalCompleted, totalCompleted / 30.0);
         } catch (SQLException e) {
-            System.err.println("Error generating user workload report: " + e.getMessage());
+            err.println("Error generating flow metrics report: " + e.getMessage());
+        }
+    }
+    
+    // Position after the last row shown: (lastDate, lastId) while paging dated rows, then lastId alone
+    // once paging has moved on to rows without a date
+    static class PageCursor {
+        static final PageCursor FIRST = new PageCursor(null, 0, false);
+        
+        private final LocalDate lastDate;
+        private final int lastId;
+        private final boolean undated;
+        
+        private PageCursor(LocalDate lastDate, int lastId, boolean undated) {
+            this.lastDate = lastDate;
+            this.lastId = lastId;
+            this.undated = undated;
+        }
+        
+        static PageCursor after(LocalDate lastDate, int lastId) {
+            return new PageCursor(lastDate, lastId, false);
+        }
+        
+        static PageCursor undatedAfter(int lastId) {
+            return new PageCursor(null, lastId, true);
+        }
+        
+        public LocalDate getLastDate() {
+            return lastDate;
+        }
+        
+        public int getLastId() {
+            return lastId;
+        }
+        
+        public boolean isUndated() {
+            return undated;
+        }
+    }
+    
+    static class TaskFilter {
+        String status;
+        String priority;
+        String assignee;
+        Integer projectId;
+        LocalDate dueFrom;
+        LocalDate dueTo;
+    }
+    
+    static final String[] TASK_FILE_COLUMNS = {
+        "project", "task_name", "description", "status", "priority", "due_date", "estimated_days", "assignee"
+    };
+    
+    interface TaskRecordReader {
+        // Returns the next record keyed by column name, or null at end of input
+        Map<String, String> next() throws IOException;
+    }
+    
+    // RFC 4180 CSV with a header row; quoted fields may contain commas, quotes and line breaks
+    static class CsvTaskReader implements TaskRecordReader {
+        private final BufferedReader reader;
+        private final List<String> header;
+        
+        CsvTaskReader(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            List<String> columns = readRow();
+            this.header = new ArrayList<>();
+            if (columns != null) {
+                for (String column : columns) {
+                    header.add(column.trim().toLowerCase());
+                }
+            }
+        }
+        
+        @Override
+        public Map<String, String> next() throws IOException {
+            List<String> row;
+            do {
+                row = readRow();
+                if (row == null) {
+                    return null;
+                }
+            } while (row.size() == 1 && row.get(0).isEmpty());
+            
+            Map<String, String> record = new HashMap<>();
+            for (int i = 0; i < Math.min(header.size(), row.size()); i++) {
+                record.put(header.get(i), row.get(i));
+            }
+            return record;
+        }
+        
+        private List<String> readRow() throws IOException {
+            int c = reader.read();
+            if (c == -1) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IOException("Unterminated quoted field");
+                    }
+                    if (c == '"') {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            field.append('"');
+                        } else {
+                            reader.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n' || c == -1) {
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = reader.read();
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+    
+    // Reads a top-level JSON array of flat objects (or objects one after another) one object at a time,
+    // so the file is never held in memory. Values may be strings, numbers, booleans or null.
+    static class JsonTaskReader implements TaskRecordReader {
+        private final BufferedReader reader;
+        private int pushedBack = -2;
+        
+        JsonTaskReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+        
+        @Override
+        public Map<String, String> next() throws IOException {
+            int c = skipWhitespace();
+            while (c == '[' || c == ',' || c == ']') {
+                c = skipWhitespace();
+            }
+            if (c == -1) {
+                return null;
+            }
+            if (c != '{') {
+                throw new IOException("Expected '{' but found '" + (char) c + "'");
+            }
+            
+            Map<String, String> record = new HashMap<>();
+            c = skipWhitespace();
+            while (c != '}') {
+                if (c != '"') {
+                    throw new IOException("Expected a field name");
+                }
+                String key = readString();
+                if (skipWhitespace() != ':') {
+                    throw new IOException("Expected ':' after \"" + key + "\"");
+                }
+                record.put(key.toLowerCase(), readValue(skipWhitespace()));
+                c = skipWhitespace();
+                if (c == ',') {
+                    c = skipWhitespace();
+                } else if (c != '}') {
+                    throw new IOException("Expected ',' or '}' in object");
+                }
+            }
+            return record;
+        }
+        
+        private String readValue(int c) throws IOException {
+            if (c == '"') {
+                return readString();
+            }
+            StringBuilder literal = new StringBuilder();
+            while (c != -1 && c != ',' && c != '}' && !Character.isWhitespace(c)) {
+                literal.append((char) c);
+                c = reader.read();
+            }
+            pushedBack = c;
+            String value = literal.toString();
+            return value.equals("null") ? null : value;
+        }
+        
+        private String readString() throws IOException {
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                int c = reader.read();
+                if (c == -1) {
+                    throw new IOException("Unterminated string");
+                }
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append((char) c);
+                    continue;
+                }
+                int escaped = reader.read();
+                switch (escaped) {
+                    case 'n': value.append('\n'); break;
+                    case 'r': value.append('\r'); break;
+                    case 't': value.append('\t'); break;
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'u':
+                        char[] hex = new char[4];
+                        if (reader.read(hex, 0, 4) != 4) {
+                            throw new IOException("Truncated unicode escape");
+                        }
+                        value.append((char) Integer.parseInt(new String(hex), 16));
+                        break;
+                    case -1:
+                        throw new IOException("Unterminated string");
+                    default:
+                        value.append((char) escaped);
+                }
+            }
+        }
+        
+        private int skipWhitespace() throws IOException {
+            int c = pushedBack != -2 ? pushedBack : reader.read();
+            pushedBack = -2;
+            while (c != -1 && Character.isWhitespace(c)) {
+                c = reader.read();
+            }
+            return c;
+        }
+    }
+    
+    static class ImportedTask {
+        final int projectId;
+        final String taskName;
+        final String description;
+        final String status;
+        final String priority;
+        final LocalDate dueDate;
+        final int estimatedDays;
+        final Integer assignedTo;
+        
+        ImportedTask(int projectId, String taskName, String description, String status, String priority,
+                     LocalDate dueDate, int estimatedDays, Integer assignedTo) {
+            this.projectId = projectId;
+            this.taskName = taskName;
+            this.description = description;
+            this.status = status;
+            this.priority = priority;
+            this.dueDate = dueDate;
+            this.estimatedDays = estimatedDays;
+            this.assignedTo = assignedTo;
+        }
+    }
+    
+    static class ImportResult {
+        private final int imported;
+        private final int rejected;
+        
+        public ImportResult(int imported, int rejected) {
+            this.imported = imported;
+            this.rejected = rejected;
+        }
+        
+        public int getImported() {
+            return imported;
+        }
+        
+        public int getRejected() {
+            return rejected;
+        }
+    }
+    
+    // Accumulates summary changes for many tasks so a bulk write applies one upsert per distinct key.
+    // Keys are sorted so concurrent writers touch summary rows in the same order and cannot deadlock.
+    static class SummaryDeltas {
+        private final Map<Integer, int[]> projects = new TreeMap<>();
+        private final Map<Integer, int[]> users = new TreeMap<>();
+        private final Map<Integer, Map<LocalDate, int[]>> openByDue = new TreeMap<>();
+        
+        void add(TaskState task, int sign) {
+            int completed = task.isCompleted() ? sign : 0;
+            if (task.getProjectId() != null) {
+                int[] counts = projects.computeIfAbsent(task.getProjectId(), k -> new int[1 + TASK_STATUSES.length]);
+                int[] delta = projectSummaryDelta(task, sign);
+                for (int i = 0; i < delta.length; i++) {
+                    counts[i] += delta[i];
+                }
+            }
+            if (task.getAssignedTo() != null) {
+                int[] counts = users.computeIfAbsent(task.getAssignedTo(), k -> new int[2]);
+                counts[0] += sign;
+                counts[1] += completed;
+                if (!task.isCompleted() && task.getDueDate() != null) {
+                    openByDue.computeIfAbsent(task.getAssignedTo(), k -> new TreeMap<>())
+                             .computeIfAbsent(task.getDueDate(), k -> new int[1])[0] += sign;
+                }
+            }
+        }
+        
+        void apply(ConnectionPool.Lease lease) throws SQLException {
+            PreparedStatement pstmt = lease.prepare(PROJECT_SUMMARY_UPSERT);
+            for (Map.Entry<Integer, int[]> entry : projects.entrySet()) {
+                bindProjectSummary(pstmt, entry.getKey(), entry.getValue());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+            
+            pstmt = lease.prepare(USER_SUMMARY_UPSERT);
+            for (Map.Entry<Integer, int[]> entry : users.entrySet()) {
+                pstmt.setInt(1, entry.getKey());
+                pstmt.setInt(2, entry.getValue()[0]);
+                pstmt.setInt(3, entry.getValue()[1]);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+            
+            pstmt = lease.prepare(USER_OPEN_DUE_UPSERT);
+            for (Map.Entry<Integer, Map<LocalDate, int[]>> user : openByDue.entrySet()) {
+                for (Map.Entry<LocalDate, int[]> entry : user.getValue().entrySet()) {
+                    pstmt.setInt(1, user.getKey());
+                    pstmt.setDate(2, Date.valueOf(entry.getKey()));
+                    pstmt.setInt(3, entry.getValue()[0]);
+                    pstmt.addBatch();
+                }
+            }
+            pstmt.executeBatch();
+        }
+    }
+    
+    // Runs the menu for remote terminals (e.g. `nc localhost 7070`). Every accepted connection gets its
+    // own ProjectManager reading from and printing to that socket, so sessions keep separate menu state
+    // while sharing the pool, the overdue watcher and the dashboard cache.
+    static class SessionServer implements AutoCloseable {
+        private final ConnectionPool pool;
+        private final OverdueWatcher overdueWatcher;
+        private final ReportDashboard dashboard;
+        private final List<PrintStream> alertListeners;
+        private final ServerSocket listener;
+        private final ExecutorService sessions = newSessionExecutor();
+        private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+        
+        SessionServer(ConnectionPool pool, OverdueWatcher overdueWatcher, ReportDashboard dashboard,
+                      List<PrintStream> alertListeners, InetSocketAddress address) throws IOException {
+            this.pool = pool;
+            this.overdueWatcher = overdueWatcher;
+            this.dashboard = dashboard;
+            this.alertListeners = alertListeners;
+            this.listener = new ServerSocket();
+            listener.bind(address);
+        }
+        
+        // Accepts until close() is called
+        void serve() {
+            while (!listener.isClosed()) {
+                try {
+                    Socket client = listener.accept();
+                    clients.add(client);
+                    sessions.execute(() -> runSession(client));
+                } catch (IOException e) {
+                    if (!listener.isClosed()) {
+                        System.err.println("Error accepting session: " + e.getMessage());
+                    }
+                }
+            }
+        }
+        
+        private void runSession(Socket client) {
+            try (Socket socket = client;
+                 Scanner in = new Scanner(socket.getInputStream(), StandardCharsets.UTF_8);
+                 PrintStream console = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+                alertListeners.add(console);
+                try {
+                    new ProjectManager(pool, overdueWatcher, dashboard, in, console, console).run();
+                } catch (NoSuchElementException e) {
+                    // The client hung up while a prompt was waiting for input
+                } finally {
+                    alertListeners.remove(console);
+                }
+            } catch (IOException e) {
+                System.err.println("Error in session: " + e.getMessage());
+            } finally {
+                clients.remove(client);
+            }
+        }
+        
+        // Closing the sockets ends sessions blocked on input; the pool outlives this and is closed by main
+        @Override
+        public void close() {
+            try {
+                listener.close();
+            } catch (IOException e) {
+                System.err.println("Error closing session listener: " + e.getMessage());
+            }
+            for (Socket client : clients) {
+                try {
+                    client.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing session: " + e.getMessage());
+                }
+            }
+            sessions.shutdown();
+            try {
+                if (!sessions.awaitTermination(10, TimeUnit.SECONDS)) {
+                    sessions.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                sessions.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    // Raises an alert the moment an open task passes its due date. Upcoming due dates sit in a min-heap
+    // and a single timer is armed for the earliest one, so nothing polls the tasks table; due tasks are
+    // confirmed with one indexed lookup because they may have been completed since they were queued.
+    static class OverdueWatcher implements AutoCloseable {
+        private final ConnectionPool pool;
+        private final Consumer<String> alerts;
+        private final ScheduledExecutorService timer;
+        private final ZoneId zone = ZoneId.systemDefault();
+        // Each entry packs (due date epoch day << 32 | task id) so the heap holds primitives only
+        private long[] heap = new long[64];
+        private int size;
+        private ScheduledFuture<?> wakeUp;
+        private long armedForDay = Long.MAX_VALUE;
+        
+        public OverdueWatcher(ConnectionPool pool, Consumer<String> alerts) {
+            this.pool = pool;
+            this.alerts = alerts;
+            this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "overdue-watcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        
+        // Loads open tasks that are not yet overdue through the partial index, once
+        public void start() throws SQLException {
+            String sql = "SELECT task_id, due_date FROM tasks " +
+                         "WHERE status != 'Completed' AND due_date >= CURRENT_DATE";
+            try (ConnectionPool.Lease lease = pool.borrow();
+                 ResultSet rs = lease.prepare(sql).executeQuery()) {
+                synchronized (this) {
+                    while (rs.next()) {
+                        push(rs.getDate("due_date").toLocalDate().toEpochDay(), rs.getInt("task_id"));
+                    }
+                    arm();
+                }
+            }
+        }
+        
+        public synchronized void track(int taskId, LocalDate dueDate) {
+            // Already-overdue tasks are the overdue report's business, not a new alert
+            if (dueDate == null || dueDate.isBefore(LocalDate.now(zone))) {
+                return;
+            }
+            push(dueDate.toEpochDay(), taskId);
+            arm();
+        }
+        
+        private void fire() {
+            long today = LocalDate.now(zone).toEpochDay();
+            Set<Integer> due = new TreeSet<>();
+            synchronized (this) {
+                wakeUp = null;
+                armedForDay = Long.MAX_VALUE;
+                while (size > 0 && (heap[0] >> 32) < today) {
+                    due.add((int) pop());
+                }
+            }
+            
+            if (!due.isEmpty()) {
+                String sql = "SELECT task_id, task_name, due_date FROM tasks " +
+                             "WHERE task_id = ANY(?) AND status != 'Completed' AND due_date < CURRENT_DATE " +
+                             "ORDER BY due_date, task_id";
+                try (ConnectionPool.Lease lease = pool.borrow()) {
+                    PreparedStatement pstmt = lease.prepare(sql);
+                    pstmt.setArray(1, lease.connection().createArrayOf("integer", due.toArray()));
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            alerts.accept("Task #" + rs.getInt("task_id") + " '" + rs.getString("task_name") +
+                                          "' is now overdue (due " + rs.getDate("due_date") + ")");
+                        }
+                    }
+                } catch (SQLException e) {
+                    System.err.println("Error checking overdue tasks: " + e.getMessage());
+                }
+            }
+            
+            synchronized (this) {
+                arm();
+            }
+        }
+        
+        // Keeps exactly one timer, set for the start of the day after the earliest due date
+        private void arm() {
+            if (size == 0) {
+                return;
+            }
+            long overdueDay = (heap[0] >> 32) + 1;
+            if (overdueDay >= armedForDay) {
+                return;
+            }
+            if (wakeUp != null) {
+                wakeUp.cancel(false);
+            }
+            long delay = LocalDate.ofEpochDay(overdueDay).atStartOfDay(zone).toInstant().toEpochMilli()
+                - System.currentTimeMillis();
+            armedForDay = overdueDay;
+            wakeUp = timer.schedule(this::fire, Math.max(0, delay), TimeUnit.MILLISECONDS);
+        }
+        
+        private void push(long epochDay, int taskId) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            int i = size++;
+            long entry = (epochDay << 32) | taskId;
+            while (i > 0 && heap[(i - 1) / 2] > entry) {
+                heap[i] = heap[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            heap[i] = entry;
+        }
+        
+        private long pop() {
+            long top = heap[0];
+            long last = heap[--size];
+            int i = 0;
+            while (2 * i + 1 < size) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (last <= heap[child]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return top;
+        }
+        
+        @Override
+        public void close() {
+            timer.shutdownNow();
+        }
+    }
+    
+    // Dependency DAG for one project in compressed sparse row form: successors of task i are
+    // succ[offsets[i] .. offsets[i + 1]). Topological order, both CPM passes and cycle detection are
+    // linear in tasks + edges and never allocate per task.
+    static class TaskGraph {
+        private final int[] ids;
+        private final int[] duration;
+        private final int[] offsets;
+        private final int[] succ;
+        private final int[] indegree;
+        private int[] order;
+        private int[] earliest;
+        private int[] latest;
+        private int projectLength;
+        
+        // Edges are given as task ids; any edge to a task outside this project is ignored
+        public TaskGraph(int[] sortedIds, int[] duration, int[] fromIds, int[] toIds, int edgeCount) {
+            int n = sortedIds.length;
+            this.ids = sortedIds;
+            this.duration = duration;
+            this.offsets = new int[n + 1];
+            this.indegree = new int[n];
+            
+            int[] from = new int[edgeCount];
+            int[] to = new int[edgeCount];
+            int m = 0;
+            for (int e = 0; e < edgeCount; e++) {
+                int u = Arrays.binarySearch(sortedIds, fromIds[e]);
+                int v = Arrays.binarySearch(sortedIds, toIds[e]);
+                if (u >= 0 && v >= 0) {
+                    from[m] = u;
+                    to[m] = v;
+                    offsets[u + 1]++;
+                    indegree[v]++;
+                    m++;
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            this.succ = new int[m];
+            int[] fill = Arrays.copyOf(offsets, n);
+            for (int e = 0; e < m; e++) {
+                succ[fill[from[e]]++] = to[e];
+            }
+        }
+        
+        public int size() {
+            return ids.length;
+        }
+        
+        // Returns false if the dependencies contain a cycle, in which case no schedule exists
+        public boolean schedule() {
+            int n = ids.length;
+            int[] remaining = indegree.clone();
+            order = new int[n];
+            int head = 0;
+            int tail = 0;
+            for (int i = 0; i < n; i++) {
+                if (remaining[i] == 0) {
+                    order[tail++] = i;
+                }
+            }
+            while (head < tail) {
+                int u = order[head++];
+                for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                    if (--remaining[succ[e]] == 0) {
+                        order[tail++] = succ[e];
+                    }
+                }
+            }
+            if (tail < n) {
+                order = null;
+                return false;
+            }
+            
+            // Forward pass: a task starts once every prerequisite has finished
+            earliest = new int[n];
+            projectLength = 0;
+            for (int u : order) {
+                int finish = earliest[u] + duration[u];
+                projectLength = Math.max(projectLength, finish);
+                for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                    earliest[succ[e]] = Math.max(earliest[succ[e]], finish);
+                }
+            }
+            
+            // Backward pass: the latest start that still lets every successor start on time
+            latest = new int[n];
+            for (int k = n - 1; k >= 0; k--) {
+                int u = order[k];
+                int latestFinish = projectLength;
+                for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                    latestFinish = Math.min(latestFinish, latest[succ[e]]);
+                }
+                latest[u] = latestFinish - duration[u];
+            }
+            return true;
+        }
+        
+        // Tasks left with unmet prerequisites after Kahn's algorithm are on or behind a cycle
+        public List<Integer> cycleTaskIds() {
+            int n = ids.length;
+            int[] remaining = indegree.clone();
+            int[] queue = new int[n];
+            int head = 0;
+            int tail = 0;
+            for (int i = 0; i < n; i++) {
+                if (remaining[i] == 0) {
+                    queue[tail++] = i;
+                }
+            }
+            while (head < tail) {
+                int u = queue[head++];
+                for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                    if (--remaining[succ[e]] == 0) {
+                        queue[tail++] = succ[e];
+                    }
+                }
+            }
+            List<Integer> blocked = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                if (remaining[i] > 0) {
+                    blocked.add(ids[i]);
+                }
+            }
+            return blocked;
+        }
+        
+        // Zero-slack tasks in topological order
+        public int[] criticalPath() {
+            int[] path = new int[order.length];
+            int count = 0;
+            for (int u : order) {
+                if (slack(u) == 0) {
+                    path[count++] = u;
+                }
+            }
+            return Arrays.copyOf(path, count);
+        }
+        
+        public int taskId(int i) {
+            return ids[i];
+        }
+        
+        public int projectLength() {
+            return projectLength;
+        }
+        
+        public int earliestStart(int i) {
+            return earliest[i];
+        }
+        
+        public int latestStart(int i) {
+            return latest[i];
+        }
+        
+        public int slack(int i) {
+            return latest[i] - earliest[i];
+        }
+    }
+    
+    interface ReportWriter {
+        void write(PrintStream out) throws SQLException;
+    }
+    
+    interface DashboardBuilder {
+        String build(ExecutorService workers) throws SQLException;
+    }
+    
+    static class DashboardSnapshot {
+        private final String text;
+        private final LocalDateTime builtAt;
+        private final long expiresAtNanos;
+        
+        DashboardSnapshot(String text, LocalDateTime builtAt, long expiresAtNanos) {
+            this.text = text;
+            this.builtAt = builtAt;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+        
+        public String getText() {
+            return text;
+        }
+        
+        public LocalDateTime getBuiltAt() {
+            return builtAt;
+        }
+    }
+    
+    // One dashboard per database, not per process. The report_dashboard row holds the latest build;
+    // a caller that finds it expired rebuilds while holding the row lock, so callers in this and every
+    // other process wait and then read that build instead of running the four reports themselves.
+    // Each process also keeps the row in memory until it expires, so a fresh dashboard costs no query.
+    static class ReportDashboard implements AutoCloseable {
+        private static final int WORKERS = 4;
+        private static final String LOCK_SQL = "SELECT 1 FROM report_dashboard WHERE id = 1 FOR UPDATE";
+        // Read after the lock is held, so a build committed while we waited is seen and the wait counts as age
+        private static final String READ_SQL =
+            "SELECT body, built_at, EXTRACT(EPOCH FROM CAST(clock_timestamp() AS TIMESTAMP) - built_at) AS age_seconds " +
+            "FROM report_dashboard WHERE id = 1";
+        private static final String STORE_SQL =
+            "UPDATE report_dashboard SET body = ?, built_at = CAST(clock_timestamp() AS TIMESTAMP) " +
+            "WHERE id = 1 RETURNING built_at";
+        
+        private final ConnectionPool pool;
+        private final Duration ttl;
+        private final ExecutorService workers;
+        private DashboardSnapshot snapshot;
+        
+        public ReportDashboard(ConnectionPool pool, Duration ttl) {
+            this.pool = pool;
+            this.ttl = ttl;
+            this.workers = Executors.newFixedThreadPool(WORKERS, r -> {
+                Thread thread = new Thread(r, "report-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        
+        public synchronized DashboardSnapshot get(DashboardBuilder builder) throws SQLException {
+            if (snapshot != null && System.nanoTime() < snapshot.expiresAtNanos) {
+                return snapshot;
+            }
+            try (ConnectionPool.Lease lease = pool.borrow()) {
+                Connection conn = lease.connection();
+                conn.setAutoCommit(false);
+                lease.prepare(LOCK_SQL).executeQuery().close();
+                DashboardSnapshot shared = null;
+                try (ResultSet rs = lease.prepare(READ_SQL).executeQuery()) {
+                    rs.next();
+                    Timestamp builtAt = rs.getTimestamp("built_at");
+                    // Age comes from the database clock, so processes on other hosts agree on expiry
+                    long ageNanos = builtAt == null ? Long.MAX_VALUE
+                                                    : (long) (rs.getDouble("age_seconds") * 1_000_000_000L);
+                    if (ageNanos < ttl.toNanos()) {
+                        shared = new DashboardSnapshot(rs.getString("body"), builtAt.toLocalDateTime(),
+                                                       System.nanoTime() + ttl.toNanos() - ageNanos);
+                    }
+                }
+                
+                if (shared == null) {
+                    // A failed build throws before the row is written, so nothing partial is shared
+                    String text = builder.build(workers);
+                    PreparedStatement store = lease.prepare(STORE_SQL);
+                    store.setString(1, text);
+                    try (ResultSet rs = store.executeQuery()) {
+                        rs.next();
+                        shared = new DashboardSnapshot(text, rs.getTimestamp("built_at").toLocalDateTime(),
+                                                       System.nanoTime() + ttl.toNanos());
+                    }
+                }
+                conn.commit();
+                snapshot = shared;
+                return snapshot;
+            }
+        }
+        
+        public Duration getTtl() {
+            return ttl;
+        }
+        
+        @Override
+        public void close() {
+            workers.shutdownNow();
+        }
+    }
+    
+    interface TransactionWork<T> {
+        T execute(ConnectionPool.Lease lease) throws SQLException;
+    }
+    
+    // The columns of a task that the report summaries are keyed on, plus the version they were read at
+    static class TaskState {
+        private final Integer projectId;
+        private final Integer assignedTo;
+        private final LocalDate dueDate;
+        private final String status;
+        private final int version;
+        
+        public TaskState(Integer projectId, Integer assignedTo, LocalDate dueDate, String status, int version) {
+            this.projectId = projectId;
+            this.assignedTo = assignedTo;
+            this.dueDate = dueDate;
+            this.status = status;
+            this.version = version;
+        }
+        
+        public TaskState withStatus(String newStatus) {
+            return new TaskState(projectId, assignedTo, dueDate, newStatus, version + 1);
+        }
+        
+        public TaskState withAssignedTo(Integer userId) {
+            return new TaskState(projectId, userId, dueDate, status, version + 1);
+        }
+        
+        public Integer getProjectId() {
+            return projectId;
+        }
+        
+        public Integer getAssignedTo() {
+            return assignedTo;
+        }
+        
+        public LocalDate getDueDate() {
+            return dueDate;
+        }
+        
+        public String getStatus() {
+            return status;
+        }
+        
+        public int getVersion() {
+            return version;
+        }
+        
+        public boolean isCompleted() {
+            return "Completed".equals(status);
+        }
+        
+        // Position in TASK_STATUSES, or -1 for a status written outside this program
+        public int statusIndex() {
+            return Arrays.asList(TASK_STATUSES).indexOf(status);
+        }
+    }
+    
+    // Bounded pool for the CLI or served sessions, the overdue watcher and the dashboard's report workers. Each
+    // connection carries its own prepared-statement cache, reached through Lease.prepare.
+    static class ConnectionPool implements AutoCloseable {
+        private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+        private static final long VALIDATE_AFTER_IDLE_MS = 1000;
+        
+        private final String url;
+        private final String user;
+        private final String password;
+        private final long borrowTimeoutMillis;
+        private final int statementCacheSize;
+        private final Semaphore permits;
+        private final BlockingQueue<PooledConnection> idle;
+        private volatile boolean closed;
+        
+        public ConnectionPool(String url, String user, String password, int maxSize, long borrowTimeoutMillis,
+                              int statementCacheSize) throws SQLException {
+            this.url = url;
+            this.user = user;
+            this.password = password;
+            this.borrowTimeoutMillis = borrowTimeoutMillis;
+            this.statementCacheSize = statementCacheSize;
+            this.permits = new Semaphore(maxSize, true);
+            this.idle = new ArrayBlockingQueue<>(maxSize);
+            
+            // Opened eagerly so a wrong DB_URL or password is reported at startup, before the menu appears
+            idle.offer(newPooledConnection());
+        }
+        
+        public Lease borrow() throws SQLException {
+            if (closed) {
+                throw new SQLException("Connection pool is closed");
+            }
+            try {
+                if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    throw new SQLException("Timed out waiting for a database connection");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted waiting for a database connection", e);
+            }
+            
+            try {
+                PooledConnection pooled;
+                while ((pooled = idle.poll()) != null) {
+                    if (isHealthy(pooled)) {
+                        return new Lease(pooled);
+                    }
+                    pooled.close();
+                }
+                return new Lease(newPooledConnection());
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+        
+        private PooledConnection newPooledConnection() throws SQLException {
+            return new PooledConnection(DriverManager.getConnection(url, user, password), statementCacheSize);
+        }
+        
+        private boolean isHealthy(PooledConnection pooled) {
+            try {
+                if (pooled.connection.isClosed()) {
+                    return false;
+                }
+                if (System.currentTimeMillis() - pooled.lastReleased < VALIDATE_AFTER_IDLE_MS) {
+                    return true;
+                }
+                return pooled.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+        
+        private void release(PooledConnection pooled) {
+            try {
+                // Transactions and the streaming export turn autocommit off; undo anything they left behind
+                if (!pooled.connection.isClosed() && !pooled.connection.getAutoCommit()) {
+                    pooled.connection.rollback();
+                    pooled.connection.setAutoCommit(true);
+                }
+                pooled.lastReleased = System.currentTimeMillis();
+                if (closed || pooled.connection.isClosed() || !idle.offer(pooled)) {
+                    pooled.close();
+                }
+            } catch (SQLException e) {
+                pooled.close();
+            } finally {
+                permits.release();
+            }
+        }
+        
+        @Override
+        public void close() {
+            closed = true;
+            PooledConnection pooled;
+            while ((pooled = idle.poll()) != null) {
+                pooled.close();
+            }
+        }
+        
+        private static class PooledConnection {
+            private final Connection connection;
+            private final Map<String, PreparedStatement> statements;
+            private long lastReleased = System.currentTimeMillis();
+            
+            PooledConnection(Connection connection, int statementCacheSize) {
+                this.connection = connection;
+                // Access-ordered LRU; the evicted statement is closed so the server can free its plan
+                this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                        if (size() <= statementCacheSize) {
+                            return false;
+                        }
+                        closeQuietly(eldest.getValue());
+                        return true;
+                    }
+                };
+            }
+            
+            // Reusing the same PreparedStatement lets the driver switch to a server-side prepared
+            // plan after a few executions, so repeated queries skip parsing and planning
+            PreparedStatement prepare(String sql) throws SQLException {
+                PreparedStatement pstmt = statements.get(sql);
+                if (pstmt == null || pstmt.isClosed()) {
+                    pstmt = connection.prepareStatement(sql);
+                    statements.put(sql, pstmt);
+                } else {
+                    pstmt.clearParameters();
+                }
+                return pstmt;
+            }
+            
+            void close() {
+                for (PreparedStatement pstmt : statements.values()) {
+                    closeQuietly(pstmt);
+                }
+                statements.clear();
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    System.err.println("Error closing connection: " + e.getMessage());
+                }
+            }
+            
+            private static void closeQuietly(PreparedStatement pstmt) {
+                try {
+                    pstmt.close();
+                } catch (SQLException e) {
+                    System.err.println("Error closing statement: " + e.getMessage());
+                }
+            }
+        }
+        
+        class Lease implements AutoCloseable {
+            private final PooledConnection pooled;
+            private boolean released;
+            
+            private Lease(PooledConnection pooled) {
+                this.pooled = pooled;
+            }
+            
+            public Connection connection() {
+                return pooled.connection;
+            }
+            
+            // Cached per connection: do not close the returned statement, release the lease instead
+            public PreparedStatement prepare(String sql) throws SQLException {
+                return pooled.prepare(sql);
+            }
+            
+            @Override
+            public void close() {
+                if (!released) {
+                    released = true;
+                    release(pooled);
+                }
+            }
         }
     }
 }